@@ -0,0 +1,104 @@
+package mqtt.bridge.benchmark;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import mqtt.bridge.App;
+
+/**
+ * Measures the steps between the request body and the MqttMessage handed to
+ * the client, each on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    @Param({ Payloads.SMALL, Payloads.MEDIUM, Payloads.LARGE })
+    public String size;
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper cborMapper;
+    private ObjectMapper msgpackMapper;
+    private byte[] body;
+    private Map<String, Object> payload;
+
+    @Setup
+    public void setup() throws IOException {
+        // same configuration as the mapper used by the service
+        objectMapper = new App().objectMapper();
+        cborMapper = new CBORMapper();
+        msgpackMapper = new ObjectMapper(new MessagePackFactory());
+        body = Payloads.create(objectMapper, size);
+        payload = objectMapper.readValue(body, MAP_TYPE);
+    }
+
+    @Benchmark
+    public Map<String, Object> bindMap() throws IOException {
+        return objectMapper.readValue(body, MAP_TYPE);
+    }
+
+    @Benchmark
+    public byte[] writeValueAsBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] bindAndWrite() throws IOException {
+        return objectMapper.writeValueAsBytes(objectMapper.readValue(body, MAP_TYPE));
+    }
+
+    @Benchmark
+    public byte[] writeCbor() throws IOException {
+        return cborMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] writeMessagePack() throws IOException {
+        return msgpackMapper.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public void validateStreaming(Blackhole blackhole) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            blackhole.consume(parser.nextToken());
+            parser.skipChildren();
+            blackhole.consume(parser.nextToken());
+        }
+    }
+
+    @Benchmark
+    public MqttMessage createMqttMessage() {
+        MqttMessage msg = new MqttMessage();
+        msg.setPayload(body);
+        msg.setQos(1);
+        return msg;
+    }
+}
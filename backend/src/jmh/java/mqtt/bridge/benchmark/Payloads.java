@@ -0,0 +1,61 @@
+package mqtt.bridge.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Request bodies of different sizes, shaped like the measurements our
+ * gateways send.
+ */
+public final class Payloads {
+
+    public static final String SMALL = "small";
+    public static final String MEDIUM = "medium";
+    public static final String LARGE = "large";
+
+    private Payloads() {
+    }
+
+    public static byte[] create(ObjectMapper objectMapper, String size) throws JsonProcessingException {
+        Map<String, Object> payload;
+        switch (size) {
+            case SMALL:
+                payload = measurement(0, 2);
+                break;
+            case MEDIUM:
+                payload = measurement(0, 40);
+                break;
+            case LARGE:
+                payload = new LinkedHashMap<>();
+                List<Object> measurements = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    measurements.add(measurement(i, 5));
+                }
+                payload.put("deviceId", "device-4711");
+                payload.put("measurements", measurements);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown payload size " + size);
+        }
+        return objectMapper.writeValueAsBytes(payload);
+    }
+
+    private static Map<String, Object> measurement(int index, int series) {
+        Map<String, Object> measurement = new LinkedHashMap<>();
+        measurement.put("time", "2022-10-17T12:00:00.000Z");
+        measurement.put("type", "c8y_Measurement");
+        measurement.put("index", index);
+        for (int i = 0; i < series; i++) {
+            Map<String, Object> value = new LinkedHashMap<>();
+            value.put("value", 20.5 + i);
+            value.put("unit", "C");
+            measurement.put("series_" + i, value);
+        }
+        return measurement;
+    }
+}
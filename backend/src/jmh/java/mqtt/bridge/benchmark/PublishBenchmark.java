@@ -0,0 +1,75 @@
+package mqtt.bridge.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mqtt.bridge.App;
+
+/**
+ * Measures a blocking publish, as done by MQTTClient when asyncPublish is
+ * disabled, against the in-process StubBroker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PublishBenchmark {
+
+    private static final String TOPIC = "benchmark/measurements";
+
+    @Param({ Payloads.SMALL, Payloads.MEDIUM, Payloads.LARGE })
+    public String size;
+
+    @Param({ "0", "1", "2" })
+    public int qos;
+
+    private StubBroker broker;
+    private MqttAsyncClient client;
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException, MqttException {
+        body = Payloads.create(new App().objectMapper(), size);
+        broker = new StubBroker();
+        client = new MqttAsyncClient(broker.getServerURI(), "benchmark", new MemoryPersistence());
+        MqttConnectOptions connOpts = new MqttConnectOptions();
+        connOpts.setCleanSession(true);
+        connOpts.setAutomaticReconnect(false);
+        client.connect(connOpts).waitForCompletion();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, MqttException {
+        client.disconnect().waitForCompletion();
+        client.close();
+        broker.close();
+    }
+
+    @Benchmark
+    public void publish() throws MqttException {
+        MqttMessage msg = new MqttMessage();
+        msg.setPayload(body);
+        msg.setQos(qos);
+        client.publish(TOPIC, msg).waitForCompletion();
+    }
+}
@@ -0,0 +1,126 @@
+package mqtt.bridge.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Minimal in-process MQTT 3.1.1 broker. It acknowledges every packet a
+ * publishing client sends and drops the messages, so benchmarks measure the
+ * client side without network or broker noise.
+ */
+public class StubBroker implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+
+    public StubBroker() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this::accept, "stub-broker-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public String getServerURI() {
+        return "tcp://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread session = new Thread(() -> serve(socket), "stub-broker-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                // server socket closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            while (true) {
+                int header = in.read();
+                if (header < 0) {
+                    return;
+                }
+                int length = readRemainingLength(in);
+                byte[] body = new byte[length];
+                in.readFully(body);
+                switch (header >> 4) {
+                    case 1: // CONNECT
+                        out.write(new byte[] { 0x20, 0x02, 0x00, 0x00 });
+                        break;
+                    case 3: // PUBLISH
+                        int qos = (header >> 1) & 0x03;
+                        if (qos > 0) {
+                            int topicLength = ((body[0] & 0xFF) << 8) | (body[1] & 0xFF);
+                            out.write(new byte[] { (byte) (qos == 1 ? 0x40 : 0x50), 0x02, body[2 + topicLength],
+                                    body[3 + topicLength] });
+                        }
+                        break;
+                    case 6: // PUBREL
+                        out.write(new byte[] { 0x70, 0x02, body[0], body[1] });
+                        break;
+                    case 8: // SUBSCRIBE, grant the requested qos of every filter
+                        int filters = 0;
+                        for (int i = 2; i < body.length; i += 3 + (((body[i] & 0xFF) << 8) | (body[i + 1] & 0xFF))) {
+                            filters++;
+                        }
+                        out.write(0x90);
+                        out.write(2 + filters);
+                        out.write(body[0]);
+                        out.write(body[1]);
+                        for (int i = 2; i < body.length; i += 3 + (((body[i] & 0xFF) << 8) | (body[i + 1] & 0xFF))) {
+                            out.write(body[i + 2 + (((body[i] & 0xFF) << 8) | (body[i + 1] & 0xFF))]);
+                        }
+                        break;
+                    case 10: // UNSUBSCRIBE
+                        out.write(new byte[] { (byte) 0xB0, 0x02, body[0], body[1] });
+                        break;
+                    case 12: // PINGREQ
+                        out.write(new byte[] { (byte) 0xD0, 0x00 });
+                        break;
+                    case 14: // DISCONNECT
+                        return;
+                    default:
+                        break;
+                }
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException e) {
+            // client went away
+        } catch (IOException e) {
+            // session closed
+        }
+    }
+
+    private static int readRemainingLength(DataInputStream in) throws IOException {
+        int value = 0;
+        int multiplier = 1;
+        int encoded;
+        do {
+            encoded = in.readUnsignedByte();
+            value += (encoded & 0x7F) * multiplier;
+            multiplier *= 128;
+        } while ((encoded & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
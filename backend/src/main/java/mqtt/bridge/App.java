@@ -1,15 +1,16 @@
 package mqtt.bridge;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import com.cumulocity.microservice.autoconfigure.MicroserviceApplication;
@@ -21,24 +22,30 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.joda.JodaModule;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import lombok.extern.slf4j.Slf4j;
 import mqtt.bridge.core.C8yAgent;
-import mqtt.bridge.service.MQTTClient;
 import mqtt.bridge.service.RFC3339DateFormat;
+import mqtt.bridge.service.VirtualThreads;
 
+@Slf4j
 @MicroserviceApplication
 @EnableContextSupport
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 public class App {
 
     @Autowired
     C8yAgent c8yAgent;
 
-    @Autowired
-    MQTTClient mqttClient;
+    @Value("${bridge.virtual-threads.enabled:false}")
+    private boolean virtualThreadsEnabled;
 
     @Bean
     public TaskExecutor taskExecutor() {
+        if (useVirtualThreads()) {
+            return new TaskExecutorAdapter(VirtualThreads.newExecutor("task-"));
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
@@ -46,11 +53,23 @@ public class App {
         return executor;
     }
 
-    @Bean("cachedThreadPool")
-    public ExecutorService cachedThreadPool() {
-        return Executors.newCachedThreadPool();
+    // requests are handled on virtual threads, blocking publishes no longer occupy a worker of the pool
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> protocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (useVirtualThreads()) {
+                protocolHandler.setExecutor(VirtualThreads.newExecutor("http-"));
+            }
+        };
     }
-    
+
+    private boolean useVirtualThreads() {
+        if (virtualThreadsEnabled && !VirtualThreads.isAvailable()) {
+            log.warn("Virtual threads require Java 21, using platform threads");
+        }
+        return virtualThreadsEnabled && VirtualThreads.isAvailable();
+    }
+
     @Bean
     @Primary
     public ObjectMapper objectMapper() {
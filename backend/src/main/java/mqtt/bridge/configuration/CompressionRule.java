@@ -0,0 +1,23 @@
+package mqtt.bridge.configuration;
+
+import javax.validation.constraints.NotNull;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mqtt.bridge.model.Compression;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CompressionRule {
+    // MQTT topic filter, + and # are supported
+    @NotNull
+    public String topicFilter;
+
+    @NotNull
+    public Compression compression;
+
+    // smaller payloads are sent uncompressed
+    public int minSize;
+}
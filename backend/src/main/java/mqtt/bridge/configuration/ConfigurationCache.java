@@ -0,0 +1,86 @@
+package mqtt.bridge.configuration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Caches the configurations stored in the tenant options, so that reads don't
+ * need a round trip to the platform. Entries expire after the configured TTL
+ * and are replaced when a configuration is saved. Every entry is a snapshot
+ * owned by the cache: stored values are copied once, and reads return the
+ * snapshot itself without copying or locking, so readers must not modify it.
+ * Missing configurations (null) are not cached.
+ */
+@Slf4j
+@Component
+public class ConfigurationCache {
+
+    public static final String KEY_CONNECTION = "connection";
+    public static final String KEY_SERVICE = "service";
+    // prefix, followed by the name of the certificate
+    public static final String KEY_CERTIFICATE = "certificate/";
+
+    @AllArgsConstructor
+    private static class Entry {
+        final Object snapshot;
+        final long expiresAt;
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${bridge.configuration.cache-ttl:300000}")
+    private long ttl;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * @return the cached snapshot, or the value of the loader if none is
+     *         cached, null if the loader returns null. Must not be modified.
+     */
+    public <T> T get(String tenant, String key, Class<T> type, Supplier<T> loader) {
+        Entry entry = entries.get(tenant + "/" + key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            return type.cast(entry.snapshot);
+        }
+        T value = loader.get();
+        if (value == null) {
+            return null;
+        }
+        // the loaded value isn't referenced by anyone else, it becomes the snapshot
+        store(tenant, key, value);
+        return value;
+    }
+
+    // the value is copied once, later changes of it don't affect the cache
+    public void put(String tenant, String key, Object value) {
+        if (value == null) {
+            invalidate(tenant, key);
+            return;
+        }
+        store(tenant, key, objectMapper.convertValue(value, value.getClass()));
+    }
+
+    private void store(String tenant, String key, Object snapshot) {
+        entries.put(tenant + "/" + key, new Entry(snapshot, System.currentTimeMillis() + ttl));
+    }
+
+    public void invalidate(String tenant, String key) {
+        log.debug("Invalidating {} configuration of tenant {}", key, tenant);
+        entries.remove(tenant + "/" + key);
+    }
+
+    public void invalidate(String tenant) {
+        entries.keySet().removeIf(k -> k.startsWith(tenant + "/"));
+    }
+}
@@ -11,6 +11,10 @@ import mqtt.bridge.model.QOS;
 @ToString ()
 public class ConfigurationConnection implements Cloneable {
 
+    public static final int MQTT_VERSION_3 = 3;
+    public static final int MQTT_VERSION_5 = 5;
+    public static final int DEFAULT_MAX_INFLIGHT = 10;
+
     @NotNull
     public String mqttHost;
     
@@ -44,6 +48,27 @@ public class ConfigurationConnection implements Cloneable {
     @NotNull
     public String nameCertificate;
 
+    // maximum number of unacknowledged messages, the default is used when not set
+    public int maxInflight;
+
+    // number of broker connections, publishes are distributed by topic hash
+    public int poolSize;
+
+    // 3 (MQTT 3.1.1, used when not set) or 5
+    public int mqttVersion;
+
+    // MQTT 5 only: seconds until the broker discards an undelivered message, 0 for no expiry
+    public long messageExpiryInterval;
+
+    // MQTT 5 only: messages from the broker that may be unacknowledged, the default is used when not set
+    public int receiveMaximum;
+
+    // MQTT 5 only: topic aliases the broker may use for messages to the bridge
+    public int topicAliasMaximum;
+
+    // a separate pool of poolSize connections per QoS level, slow acknowledged messages don't delay QoS 0
+    public boolean qosLanes;
+
 
     public Object clone() 
     {
@@ -65,5 +90,29 @@ public class ConfigurationConnection implements Cloneable {
     public static boolean isEnabled(ConfigurationConnection mc) {
         return ConfigurationConnection.isValid(mc) && mc.enabled;
     }
+
+    public static int getMaxInflight(ConfigurationConnection mc) {
+        return (mc != null && mc.maxInflight > 0) ? mc.maxInflight : DEFAULT_MAX_INFLIGHT;
+    }
+
+    public static int getMqttVersion(ConfigurationConnection mc) {
+        return (mc != null && mc.mqttVersion == MQTT_VERSION_5) ? MQTT_VERSION_5 : MQTT_VERSION_3;
+    }
+
+    public static int getPoolSize(ConfigurationConnection mc) {
+        return (mc != null && mc.poolSize > 1) ? mc.poolSize : 1;
+    }
+
+    public static int getLanes(ConfigurationConnection mc) {
+        return (mc != null && mc.qosLanes) ? QOS.values().length : 1;
+    }
+
+    // index counts over all lanes, the connections of a lane are adjacent
+    public static String getPoolClientId(ConfigurationConnection mc, int index) {
+        int poolSize = getPoolSize(mc);
+        String clientId = getLanes(mc) == 1 ? mc.clientId : mc.clientId + "-q" + index / poolSize;
+        // a single connection keeps the configured client id
+        return poolSize == 1 ? clientId : clientId + "-" + index % poolSize;
+    }
 }
 
@@ -26,6 +26,8 @@ public class ConfigurationService {
     private static final String OPTION_KEY_CONFIGURATION = "credentials.connection.configuration";
     private static final String OPTION_KEY_SERVICE_CONFIGURATION = "service.configuration";
 
+    private static final int CERTIFICATE_PAGE_SIZE = 100;
+
     private final TenantOptionApi tenantOptionApi;
     
     private final Platform platform;
@@ -40,15 +42,24 @@ public class ConfigurationService {
     }
 
     public TrustedCertificateRepresentation loadCertificateByName(String certificateName, MicroserviceCredentials credentials) {
-        TrustedCertificateRepresentation[] results = { new TrustedCertificateRepresentation() };
-        TrustedCertificateCollectionRepresentation certificates = platform.rest().get(String.format("/tenant/tenants/%s/trusted-certificates", credentials.getTenant()), MediaType.APPLICATION_JSON_TYPE, TrustedCertificateCollectionRepresentation.class);        
-        certificates.forEach(cert -> {
-            if ( cert.getName().equals(certificateName)) {
-                results[0] = cert;
-            log.debug("Found certificate with fingerprint: {} with name: {}", cert.getFingerprint(), cert.getName() );
+        // walk through all pages of the collection, stop as soon as the certificate is found
+        for (int currentPage = 1;; currentPage++) {
+            TrustedCertificateCollectionRepresentation certificates = platform.rest().get(
+                    String.format("/tenant/tenants/%s/trusted-certificates?pageSize=%d&currentPage=%d",
+                            credentials.getTenant(), CERTIFICATE_PAGE_SIZE, currentPage),
+                    MediaType.APPLICATION_JSON_TYPE, TrustedCertificateCollectionRepresentation.class);
+            int count = 0;
+            for (TrustedCertificateRepresentation cert : certificates) {
+                count++;
+                if (cert.getName().equals(certificateName)) {
+                    log.debug("Found certificate with fingerprint: {} with name: {}", cert.getFingerprint(), cert.getName() );
+                    return cert;
+                }
+            }
+            if (count < CERTIFICATE_PAGE_SIZE) {
+                return new TrustedCertificateRepresentation();
             }
-        });
-        return results[0];
+        }
     }
 
     public void saveServiceConfiguration(final ServiceConfiguration configuration) throws JsonProcessingException {
@@ -105,7 +116,7 @@ public class ConfigurationService {
         option.setKey(OPTION_KEY_SERVICE_CONFIGURATION);
         try {
             final OptionRepresentation optionRepresentation = tenantOptionApi.getOption(option);
-            final ServiceConfiguration configuration = new ObjectMapper().readValue(optionRepresentation.getValue(), ServiceConfiguration.class);
+            final ServiceConfiguration configuration = objectMapper.readValue(optionRepresentation.getValue(), ServiceConfiguration.class);
             log.debug("Returning service configuration found: {}:", configuration.logPayload );
             return configuration;
         } catch (SDKException exception) {
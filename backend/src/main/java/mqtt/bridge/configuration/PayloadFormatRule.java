@@ -0,0 +1,20 @@
+package mqtt.bridge.configuration;
+
+import javax.validation.constraints.NotNull;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import mqtt.bridge.model.PayloadFormat;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PayloadFormatRule {
+    // MQTT topic filter, + and # are supported
+    @NotNull
+    public String topicFilter;
+
+    @NotNull
+    public PayloadFormat format;
+}
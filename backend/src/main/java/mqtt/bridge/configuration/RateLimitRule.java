@@ -0,0 +1,22 @@
+package mqtt.bridge.configuration;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitRule {
+    // MQTT topic filter, + and # are supported, the rule applies to all topics when not set
+    public String topicFilter;
+
+    // every client gets its own budget instead of sharing one with all clients
+    public boolean perClient;
+
+    // messages per second, rules without a positive rate are ignored
+    public double rate;
+
+    // messages that can be sent at once after a pause, at least one
+    public int burst;
+}
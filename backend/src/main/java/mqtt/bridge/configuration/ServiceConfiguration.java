@@ -1,4 +1,8 @@
 package mqtt.bridge.configuration;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 
 import com.fasterxml.jackson.annotation.JsonSetter;
@@ -12,12 +16,71 @@ import lombok.ToString;
 @ToString ()
 @AllArgsConstructor
 public class ServiceConfiguration implements Cloneable {
+    public Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+
     public ServiceConfiguration () {
         this.logPayload = false;
+        this.passthroughPayload = false;
+        this.validatePayload = true;
+        this.asyncPublish = false;
+        this.compressionRules = new ArrayList<>();
+        this.payloadFormatRules = new ArrayList<>();
+        this.topicTemplates = new ArrayList<>();
+        this.transformationRules = new ArrayList<>();
+        this.rateLimits = new ArrayList<>();
     }
 
     @NotNull
     @JsonSetter(nulls = Nulls.SKIP)
     public boolean logPayload;
 
+    // forward the request body byte for byte instead of binding it to a map and serializing it again
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public boolean passthroughPayload;
+
+    // in passthrough mode check the body for well-formed JSON with a streaming parser, no tree is built
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public boolean validatePayload;
+
+    // don't wait for the broker ack, the REST call returns a delivery id that can be queried
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public boolean asyncPublish;
+
+    // the first rule matching the topic decides if and how a payload is compressed
+    @NotNull
+    @Valid
+    @JsonSetter(nulls = Nulls.SKIP)
+    public List<CompressionRule> compressionRules;
+
+    // the first rule matching the topic selects the output format, JSON is used when no rule matches
+    @NotNull
+    @Valid
+    @JsonSetter(nulls = Nulls.SKIP)
+    public List<PayloadFormatRule> payloadFormatRules;
+
+    // templates to derive the topic from the payload, used by /template/{name}
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public List<TopicTemplateConfiguration> topicTemplates;
+
+    // the first rule matching the topic reshapes the payload before it is written in the output format
+    @NotNull
+    @Valid
+    @JsonSetter(nulls = Nulls.SKIP)
+    public List<TransformationRule> transformationRules;
+
+    // a message is only published when every rule matching its topic has a token left
+    @NotNull
+    @JsonSetter(nulls = Nulls.SKIP)
+    public List<RateLimitRule> rateLimits;
+
 }
@@ -0,0 +1,23 @@
+package mqtt.bridge.configuration;
+
+import javax.validation.constraints.NotNull;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopicTemplateConfiguration {
+    // referenced by the REST endpoint /template/{name}
+    @NotNull
+    public String name;
+
+    // topic with substitutions from the payload, e.g. devices/{$.deviceId}/measurements/{$.type}
+    @NotNull
+    public String template;
+
+    // optional, the resolved topics must match this filter
+    public String topicFilter;
+}
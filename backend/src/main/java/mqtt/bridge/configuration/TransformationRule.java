@@ -0,0 +1,35 @@
+package mqtt.bridge.configuration;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Reshapes JSON payloads published to matching topics. Fields are addressed
+ * by their path, nested fields are separated by dots, e.g. data.temperature.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransformationRule {
+    // MQTT topic filter, + and # are supported
+    @NotNull
+    public String topicFilter;
+
+    // path of the field to its new name, the field stays in the same object
+    public Map<String, String> rename;
+
+    // paths of the fields to remove
+    public List<String> drop;
+
+    // path of the numeric field to the factor it is multiplied with
+    public Map<String, Double> scale;
+
+    // name of a field in the top level object that receives the time of publishing
+    public String timestampField;
+}
@@ -1,10 +1,10 @@
 package mqtt.bridge.core;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
-
-import javax.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +13,7 @@ import org.springframework.stereotype.Service;
 
 import com.cumulocity.microservice.context.credentials.MicroserviceCredentials;
 import com.cumulocity.microservice.subscription.model.MicroserviceSubscriptionAddedEvent;
+import com.cumulocity.microservice.subscription.model.MicroserviceSubscriptionRemovedEvent;
 import com.cumulocity.microservice.subscription.service.MicroserviceSubscriptionsService;
 import com.cumulocity.model.Agent;
 import com.cumulocity.model.ID;
@@ -28,9 +29,12 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 
 import c8y.IsDevice;
 import lombok.extern.slf4j.Slf4j;
+import mqtt.bridge.configuration.ConfigurationCache;
 import mqtt.bridge.configuration.ConfigurationService;
 import mqtt.bridge.configuration.ServiceConfiguration;
 import mqtt.bridge.configuration.ConfigurationConnection;
+import mqtt.bridge.service.BridgeRegistry;
+import mqtt.bridge.service.EventReporter;
 import mqtt.bridge.service.MQTTClient;
 import mqtt.bridge.service.ServiceStatus;
 
@@ -51,47 +55,51 @@ public class C8yAgent {
     private MicroserviceSubscriptionsService subscriptionsService;
 
     @Autowired
-    private MQTTClient mqttClient;
+    private BridgeRegistry bridgeRegistry;
 
     @Autowired
     private ConfigurationService configurationService;
 
-    private ManagedObjectRepresentation  agentRepresentation;
-    ;
+    @Autowired
+    private ConfigurationCache configurationCache;
 
-    private final String AGENT_ID = "MQTT_BRIDGE_SERVICE";
-    private final String AGENT_NAME = "REST 2 MQTT Bridge Service";
+    // the agent and the credentials of every subscribed tenant
+    private final Map<String, ManagedObjectRepresentation> agentRepresentations = new ConcurrentHashMap<>();
 
-    public String tenant;
+    private final Map<String, MicroserviceCredentials> credentials = new ConcurrentHashMap<>();
 
-    private MicroserviceCredentials credentials;
+    private final String AGENT_ID = "MQTT_BRIDGE_SERVICE";
+    private final String AGENT_NAME = "REST 2 MQTT Bridge Service";
 
     @EventListener
     public void initialize(MicroserviceSubscriptionAddedEvent event) {
-        tenant = event.getCredentials().getTenant();
-        credentials = event.getCredentials();
+        String tenant = event.getCredentials().getTenant();
+        credentials.put(tenant, event.getCredentials());
         log.info("Event received for Tenant {}", tenant);
         TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
 
+        MQTTClient mqttClient = bridgeRegistry.addTenant(tenant);
+
         /* Connecting to Cumulocity */
-        subscriptionsService.runForTenant(tenant, () -> {
+        runForTenant(tenant, "registerAgent", () -> {
             // register agent
             ExternalIDRepresentation agentIdRepresentation = null;
             try {
-                agentIdRepresentation = getExternalId(AGENT_ID, null);
+                agentIdRepresentation = getExternalId(tenant, AGENT_ID, null);
             } catch (Exception e) {
                 log.error(e.getMessage());
             }
             if (agentIdRepresentation != null) {
                 log.info("Agent with ID {} already exists {}", AGENT_ID,
                         agentIdRepresentation);
-                agentRepresentation = agentIdRepresentation.getManagedObject();
+                agentRepresentations.put(tenant, agentIdRepresentation.getManagedObject());
             } else {
                 ManagedObjectRepresentation agent = new ManagedObjectRepresentation();
                 agent.setName(AGENT_NAME);
                 agent.set(new Agent());
                 agent.set(new IsDevice());
-                agentRepresentation = inventoryApi.create(agent);
+                ManagedObjectRepresentation agentRepresentation = inventoryApi.create(agent);
+                agentRepresentations.put(tenant, agentRepresentation);
                 log.info("Agent has been created with ID {}", agentRepresentation.getId());
                 ExternalIDRepresentation externalAgentId = createExternalID(agentRepresentation, AGENT_ID, "c8y_Serial");
                 log.info("ExternalId created: {}", externalAgentId.getExternalId());
@@ -101,21 +109,35 @@ public class C8yAgent {
         try {
             mqttClient.submitInitialize();
             mqttClient.submitConnect();
-            mqttClient.runHouskeeping();
+            mqttClient.submitHousekeeping();
         } catch (Exception e) {
             log.error("Error on MQTT Connection: ", e);
             mqttClient.submitConnect();
         }
     }
 
-    @PreDestroy
-    private void stop() {
+    @EventListener
+    public void destroy(MicroserviceSubscriptionRemovedEvent event) {
+        String tenant = event.getTenant();
+        log.info("Unsubscribe event received for Tenant {}", tenant);
+        bridgeRegistry.removeTenant(tenant);
+        configurationCache.invalidate(tenant);
+        agentRepresentations.remove(tenant);
+        credentials.remove(tenant);
+    }
+
+    // all calls to the platform are timed by operation
+    private void runForTenant(String tenant, String operation, Runnable runnable) {
+        MQTTClient mqttClient = bridgeRegistry.get(tenant);
         if (mqttClient != null) {
-            mqttClient.disconnect();
+            mqttClient.getMetrics().c8yTimer(operation)
+                    .record(() -> subscriptionsService.runForTenant(tenant, runnable));
+        } else {
+            subscriptionsService.runForTenant(tenant, runnable);
         }
     }
 
-    public ExternalIDRepresentation getExternalId(String externalId, String type) {
+    public ExternalIDRepresentation getExternalId(String tenant, String externalId, String type) {
         if (type == null) {
             type = "c8y_Serial";
         }
@@ -123,7 +145,7 @@ public class C8yAgent {
         id.setType(type);
         id.setValue(externalId);
         ExternalIDRepresentation[] extIds = { null };
-        subscriptionsService.runForTenant(tenant, () -> {
+        runForTenant(tenant, "getExternalId", () -> {
             try {
                 extIds[0] = identityApi.getExternalId(id);
             } catch (SDKException e) {
@@ -147,10 +169,11 @@ public class C8yAgent {
         return externalID;
     }
 
-    public void createEvent(String message, String type, DateTime eventTime, ManagedObjectRepresentation parentMor) {
+    public void createEvent(String tenant, String message, String type, DateTime eventTime,
+            ManagedObjectRepresentation parentMor) {
         EventRepresentation[] ers = { new EventRepresentation() };
-        subscriptionsService.runForTenant(tenant, () -> {
-            ers[0].setSource(parentMor != null ? parentMor : agentRepresentation);
+        runForTenant(tenant, "createEvent", () -> {
+            ers[0].setSource(parentMor != null ? parentMor : agentRepresentations.get(tenant));
             ers[0].setText(message);
             ers[0].setDateTime(eventTime);
             ers[0].setType(type);
@@ -158,33 +181,60 @@ public class C8yAgent {
         });
     }
 
-    public ConfigurationConnection loadConnectionConfiguration() {
-        ConfigurationConnection[] results = { new ConfigurationConnection() };
-        subscriptionsService.runForTenant(tenant, () -> {
-            results[0] = configurationService.loadConnectionConfiguration();
-            // COMMENT OUT ONLY DEBUG
-            // results[0].active = true;
-            log.info("Found connection configuration: {}", results[0]);
+    // sends all events with a single switch into the tenant context
+    public void createEvents(String tenant, List<EventReporter.Event> events) {
+        runForTenant(tenant, "createEvents", () -> {
+            for (EventReporter.Event event : events) {
+                EventRepresentation er = new EventRepresentation();
+                er.setSource(agentRepresentations.get(tenant));
+                er.setText(event.getMessage());
+                er.setDateTime(event.getTime());
+                er.setType(event.getType());
+                this.eventApi.createAsync(er);
+            }
         });
-        return results[0];
     }
 
-    public MQTTClient.Certificate loadCertificateByName(String fingerprint) {
-        TrustedCertificateRepresentation[] results = { new TrustedCertificateRepresentation() };
-        subscriptionsService.runForTenant(tenant, () -> {
-            results[0] = configurationService.loadCertificateByName(fingerprint, credentials);
-            log.info("Found certificate with fingerprint: {}", results[0].getFingerprint());
+    public ConfigurationConnection loadConnectionConfiguration(String tenant) {
+        return configurationCache.get(tenant, ConfigurationCache.KEY_CONNECTION, ConfigurationConnection.class, () -> {
+            ConfigurationConnection[] results = { null };
+            runForTenant(tenant, "loadConnectionConfiguration", () -> {
+                results[0] = configurationService.loadConnectionConfiguration();
+                // COMMENT OUT ONLY DEBUG
+                // results[0].active = true;
+                log.info("Found connection configuration: {}", results[0]);
+            });
+            return results[0];
         });
-        StringBuffer cert = new StringBuffer("-----BEGIN CERTIFICATE-----\n").append(results[0].getCertInPemFormat())
-                .append("\n").append("-----END CERTIFICATE-----");
+    }
 
-        return new MQTTClient.Certificate(results[0].getFingerprint(), cert.toString());
+    public MQTTClient.Certificate loadCertificateByName(String tenant, String fingerprint) {
+        return configurationCache.get(tenant, ConfigurationCache.KEY_CERTIFICATE + fingerprint,
+                MQTTClient.Certificate.class, () -> {
+            TrustedCertificateRepresentation[] results = { new TrustedCertificateRepresentation() };
+            runForTenant(tenant, "loadCertificateByName", () -> {
+                results[0] = configurationService.loadCertificateByName(fingerprint, credentials.get(tenant));
+            });
+            // not found, the next lookup asks the platform again
+            if (results[0] == null || results[0].getCertInPemFormat() == null) {
+                log.warn("Certificate {} not found", fingerprint);
+                return null;
+            }
+            log.info("Found certificate with fingerprint: {}", results[0].getFingerprint());
+            StringBuffer cert = new StringBuffer("-----BEGIN CERTIFICATE-----\n").append(results[0].getCertInPemFormat())
+                    .append("\n").append("-----END CERTIFICATE-----");
+
+            return new MQTTClient.Certificate(results[0].getFingerprint(), cert.toString());
+        });
     }
 
-    public void saveConnectionConfiguration(ConfigurationConnection configuration) {
-        subscriptionsService.runForTenant(tenant, () -> {
+    public void saveConnectionConfiguration(String tenant, ConfigurationConnection configuration) {
+        runForTenant(tenant, "saveConnectionConfiguration", () -> {
             try {
                 configurationService.saveConnectionConfiguration(configuration);
+                configurationCache.put(tenant, ConfigurationCache.KEY_CONNECTION, configuration);
+                // the configuration might refer to a different or renewed certificate
+                configurationCache.invalidate(tenant, ConfigurationCache.KEY_CERTIFICATE + configuration.nameCertificate);
                 log.debug("Saved connection configuration");
             } catch (JsonProcessingException e) {
                 log.error("JsonProcessingException configuration: {}", e);
@@ -193,19 +243,22 @@ public class C8yAgent {
         });
     }
 
-    public ServiceConfiguration loadServiceConfiguration() {
-        ServiceConfiguration[] results = { new ServiceConfiguration() };
-        subscriptionsService.runForTenant(tenant, () -> {
-            results[0] = configurationService.loadServiceConfiguration();
-            log.info("Found service configuration: {}", results[0]);
+    public ServiceConfiguration loadServiceConfiguration(String tenant) {
+        return configurationCache.get(tenant, ConfigurationCache.KEY_SERVICE, ServiceConfiguration.class, () -> {
+            ServiceConfiguration[] results = { null };
+            runForTenant(tenant, "loadServiceConfiguration", () -> {
+                results[0] = configurationService.loadServiceConfiguration();
+                log.info("Found service configuration: {}", results[0]);
+            });
+            return results[0];
         });
-        return results[0];
     }
 
-    public void saveServiceConfiguration(ServiceConfiguration configuration) {
-        subscriptionsService.runForTenant(tenant, () -> {
+    public void saveServiceConfiguration(String tenant, ServiceConfiguration configuration) {
+        runForTenant(tenant, "saveServiceConfiguration", () -> {
             try {
                 configurationService.saveServiceConfiguration(configuration);
+                configurationCache.put(tenant, ConfigurationCache.KEY_SERVICE, configuration);
                 log.debug("Saved service configuration");
             } catch (JsonProcessingException e) {
                 log.error("JsonProcessingException configuration: {}", e);
@@ -214,24 +267,25 @@ public class C8yAgent {
         });
     }
 
-    public ConfigurationConnection enableConnection(boolean b) {
+    public ConfigurationConnection enableConnection(String tenant, boolean b) {
         ConfigurationConnection[] mcr = { null };
-        subscriptionsService.runForTenant(tenant, () -> {
+        runForTenant(tenant, "enableConnection", () -> {
             mcr[0] = configurationService.enableConnection(b);
+            configurationCache.put(tenant, ConfigurationCache.KEY_CONNECTION, mcr[0]);
             log.info("Saved configuration");
         });
         return mcr[0];
     }
 
-    public void sendStatusService(String type, ServiceStatus serviceStatus) {
+    public void sendStatusService(String tenant, String type, ServiceStatus serviceStatus) {
         log.debug("Sending status configuration: {}", serviceStatus);
         // EventRepresentation[] ers = { new EventRepresentation() };
-        subscriptionsService.runForTenant(tenant, () -> {
+        runForTenant(tenant, "sendStatusService", () -> {
             Map<String, String> entry = Map.of("service", serviceStatus.getStatus().name());
             Map<String, Object> service = new HashMap<String, Object>();
             service.put("service_status", entry);
             ManagedObjectRepresentation update = new ManagedObjectRepresentation();
-            update.setId(agentRepresentation.getId());
+            update.setId(agentRepresentations.get(tenant).getId());
             update.setAttrs(service);
             this.inventoryApi.update(update);
         });
@@ -0,0 +1,22 @@
+package mqtt.bridge.model;
+
+public enum Compression {
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    // value of the Content-Encoding
+    public final String encoding;
+
+    private Compression(String encoding) {
+        this.encoding = encoding;
+    }
+
+    public static Compression fromEncoding(String encoding) {
+        for (Compression compression : values()) {
+            if (compression.encoding.equalsIgnoreCase(encoding)) {
+                return compression;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,7 @@
+package mqtt.bridge.model;
+
+public enum DeliveryState {
+  PENDING,
+  ACKED,
+  FAILED,
+}
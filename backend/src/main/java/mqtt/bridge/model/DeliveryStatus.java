@@ -0,0 +1,17 @@
+package mqtt.bridge.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DeliveryStatus {
+    private long id;
+    private DeliveryState state;
+    private String error;
+}
@@ -0,0 +1,23 @@
+package mqtt.bridge.model;
+
+public enum PayloadFormat {
+    JSON("application/json"),
+    CBOR("application/cbor"),
+    SMILE("application/x-jackson-smile"),
+    MSGPACK("application/msgpack");
+
+    public final String contentType;
+
+    private PayloadFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public static PayloadFormat fromName(String name) {
+        for (PayloadFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,32 @@
+package mqtt.bridge.model;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Options of a single REST request, they override the service configuration.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PublishOptions {
+    public static final PublishOptions DEFAULT = new PublishOptions();
+
+    // output format of the payload, the format configured for the topic is used when not set
+    private PayloadFormat format;
+
+    // metadata of the request, only built and sent with MQTT 5
+    private Supplier<Map<String, String>> userProperties;
+
+    // user of the request, rate limits per client are applied to it
+    private String client;
+
+    // QoS and retain flag of the request, the QoS of the connection and false are used when not set
+    private QOS qos;
+
+    private Boolean retain;
+}
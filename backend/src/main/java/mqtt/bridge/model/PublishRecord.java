@@ -0,0 +1,26 @@
+package mqtt.bridge.model;
+
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PublishRecord {
+    @NotNull
+    private String topic;
+
+    @NotNull
+    private JsonNode payload;
+
+    // optional, the qos of the connection configuration is used when not set
+    private QOS qos;
+
+    // optional, defaults to false
+    private Boolean retain;
+}
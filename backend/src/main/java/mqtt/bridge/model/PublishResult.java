@@ -0,0 +1,34 @@
+package mqtt.bridge.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PublishResult {
+    private int index;
+    private String topic;
+    private boolean success;
+    // only set when the payload was published asynchronously
+    private Long deliveryId;
+    private String error;
+
+    public static PublishResult success(int index, String topic, Long deliveryId) {
+        return new PublishResult(index, topic, true, deliveryId, null);
+    }
+
+    public static PublishResult failure(int index, String topic, String error) {
+        return new PublishResult(index, topic, false, null, error);
+    }
+
+    // rough heap size in bytes, bounds the memory of remembered outcomes
+    public long estimatedSize() {
+        return 40 + (topic != null ? 40 + 2L * topic.length() : 0) + (deliveryId != null ? 16 : 0)
+                + (error != null ? 40 + 2L * error.length() : 0);
+    }
+}
@@ -0,0 +1,16 @@
+package mqtt.bridge.model;
+
+public class RateLimitException extends RuntimeException {
+
+    private final long retryAfterNanos;
+
+    public RateLimitException(String topic, long retryAfterNanos) {
+        super("Rate limit exceeded for topic " + topic);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    // value of the Retry-After header, rounded up to full seconds
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (retryAfterNanos + 999_999_999L) / 1_000_000_000L);
+    }
+}
@@ -0,0 +1,15 @@
+package mqtt.bridge.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * A record sent over the streaming ingestion, the id is echoed in the reply.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class StreamFrame extends PublishRecord {
+    private Long id;
+}
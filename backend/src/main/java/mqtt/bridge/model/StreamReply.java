@@ -0,0 +1,35 @@
+package mqtt.bridge.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StreamReply {
+    public static final String TYPE_ACK = "ack";
+    public static final String TYPE_ERROR = "error";
+    public static final String TYPE_CREDIT = "credit";
+
+    private String type;
+    private Long id;
+    // number of further frames the client may send, every ack and error returns one credit implicitly
+    private Integer credits;
+    private String error;
+
+    public static StreamReply ack(Long id) {
+        return new StreamReply(TYPE_ACK, id, null, null);
+    }
+
+    public static StreamReply error(Long id, String error) {
+        return new StreamReply(TYPE_ERROR, id, null, error);
+    }
+
+    public static StreamReply credit(int credits) {
+        return new StreamReply(TYPE_CREDIT, null, credits, null);
+    }
+}
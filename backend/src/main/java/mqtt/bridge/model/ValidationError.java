@@ -4,8 +4,15 @@ public enum ValidationError {
   Only_One_Multi_Level_Wildcard,
   Only_One_Single_Level_Wildcard,
   Multi_Level_Wildcard_Only_At_End,
+  Wildcard_Must_Occupy_Entire_Level,
   Only_One_Substitution_Defining_Device_Identifier_Can_Be_Used,
   TemplateTopic_Must_Match_The_SubscriptionTopic,
   TemplateTopic_Not_Unique,
-  TemplateTopic_Must_Not_Be_Substring_Of_Other_TemplateTopic
+  TemplateTopic_Must_Not_Be_Substring_Of_Other_TemplateTopic,
+  TemplateTopic_Must_Not_Contain_Wildcards,
+  TemplateTopic_Invalid_Substitution,
+  TemplateTopic_Name_And_Template_Required,
+  TopicFilter_Required,
+  Compression_Required,
+  PayloadFormat_Required
 }
@@ -0,0 +1,198 @@
+package mqtt.bridge.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import mqtt.bridge.model.PublishOptions;
+import mqtt.bridge.service.BridgeMetrics;
+import mqtt.bridge.service.MQTTClient;
+import mqtt.bridge.service.PublishWindow;
+
+/**
+ * Forwards the body of a single request without holding a thread. The body is
+ * only read once a slot in the publish window is free and the response is
+ * sent when the broker acknowledged the message, so a slow broker slows down
+ * the reading of the requests.
+ */
+@Slf4j
+public class PayloadIngestListener implements ReadListener, AsyncListener {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final MQTTClient mqttClient;
+    private final ObjectMapper objectMapper;
+    private final String topic;
+    private final PublishOptions options;
+    private final AsyncContext asyncContext;
+    private final int maxPayloadSize;
+    private final Timer.Sample sample;
+    // the lane of the requested QoS, the permit is returned to the window it was taken from
+    private final PublishWindow window;
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+    // the same instance is needed to leave the queue of the window
+    private final Runnable permitCallback = this::onPermit;
+
+    private final AtomicBoolean permitted = new AtomicBoolean();
+    private final AtomicBoolean done = new AtomicBoolean();
+    private ServletInputStream input;
+
+    public PayloadIngestListener(MQTTClient mqttClient, ObjectMapper objectMapper, String topic,
+            PublishOptions options, AsyncContext asyncContext, int maxPayloadSize) {
+        this.mqttClient = mqttClient;
+        this.objectMapper = objectMapper;
+        this.topic = topic;
+        this.options = options;
+        this.asyncContext = asyncContext;
+        this.maxPayloadSize = maxPayloadSize;
+        this.sample = mqttClient.getMetrics().start();
+        this.window = mqttClient.getPublishWindow(options.getQos());
+    }
+
+    public void start() {
+        asyncContext.addListener(this);
+        if (!window.acquire(permitCallback)) {
+            respond(HttpStatus.SERVICE_UNAVAILABLE, "Too many requests waiting for the broker");
+        }
+    }
+
+    private void onPermit() {
+        permitted.set(true);
+        if (done.get()) {
+            // the request timed out while waiting
+            release();
+            return;
+        }
+        // continue on a container thread, the permit might be handed over by a broker callback
+        asyncContext.start(() -> {
+            try {
+                input = asyncContext.getRequest().getInputStream();
+                input.setReadListener(this);
+            } catch (IOException | IllegalStateException e) {
+                onError(e);
+            }
+        });
+    }
+
+    @Override
+    public void onDataAvailable() throws IOException {
+        int n;
+        while (!done.get() && input.isReady() && (n = input.read(buffer)) != -1) {
+            if (body.size() + n > maxPayloadSize) {
+                respond(HttpStatus.PAYLOAD_TOO_LARGE, "Payload exceeds " + maxPayloadSize + " bytes");
+                return;
+            }
+            body.write(buffer, 0, n);
+        }
+    }
+
+    @Override
+    public void onAllDataRead() {
+        if (done.get()) {
+            return;
+        }
+        log.debug("Forward payload of {} bytes to topic {}", body.size(), topic);
+        mqttClient.forwardPayloadAsync(topic, body.toByteArray(), options).whenComplete((result, ex) -> {
+            if (ex == null) {
+                respond(HttpStatus.OK, null);
+            } else {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                respond(statusOf(cause), cause.getLocalizedMessage());
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.warn("Error reading payload for topic {}: {}", topic, t.getMessage());
+        respond(HttpStatus.BAD_REQUEST, t.getLocalizedMessage());
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+        respond(HttpStatus.SERVICE_UNAVAILABLE, "Timeout waiting for the broker");
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+        // the client closed the connection
+        if (done.compareAndSet(false, true)) {
+            release();
+            mqttClient.getMetrics().recordRequest(sample, "ingest", BridgeMetrics.OUTCOME_FAILURE);
+        }
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    // same mapping as the blocking endpoint
+    private static HttpStatus statusOf(Throwable ex) {
+        if (ex instanceof MqttException
+                && ((MqttException) ex).getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT)
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        else if (ex instanceof JsonProcessingException)
+            return HttpStatus.BAD_REQUEST;
+        else if (ex instanceof RuntimeException)
+            return HttpStatus.CONFLICT;
+        else
+            return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    // returns the permit, or leaves the queue if there is none yet
+    private void release() {
+        if (permitted.compareAndSet(true, false)) {
+            window.release();
+        } else {
+            window.cancel(permitCallback);
+        }
+    }
+
+    private void respond(HttpStatus status, String message) {
+        if (!done.compareAndSet(false, true)) {
+            return;
+        }
+        release();
+        mqttClient.getMetrics().recordRequest(sample, "ingest",
+                status.is2xxSuccessful() ? BridgeMetrics.OUTCOME_SUCCESS : BridgeMetrics.OUTCOME_FAILURE);
+        try {
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            response.setStatus(status.value());
+            if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+                response.setHeader("Retry-After", "1");
+            }
+            if (message != null) {
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                objectMapper.writeValue(response.getOutputStream(),
+                        Map.of("status", status.value(), "error", status.getReasonPhrase(), "message", message));
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.warn("Error responding to payload request for topic {}: {}", topic, e.getMessage());
+        } finally {
+            asyncContext.complete();
+        }
+    }
+}
@@ -1,43 +1,264 @@
 package mqtt.bridge.rest;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
+import org.eclipse.paho.client.mqttv3.MqttException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.cumulocity.microservice.context.ContextService;
+import com.cumulocity.microservice.context.credentials.UserCredentials;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import mqtt.bridge.configuration.ConfigurationConnection;
 import mqtt.bridge.configuration.ServiceConfiguration;
+import mqtt.bridge.configuration.TransformationRule;
 import mqtt.bridge.core.C8yAgent;
+import mqtt.bridge.model.Compression;
+import mqtt.bridge.model.DeliveryStatus;
+import mqtt.bridge.model.PayloadFormat;
+import mqtt.bridge.model.PublishOptions;
+import mqtt.bridge.model.PublishResult;
+import mqtt.bridge.model.QOS;
+import mqtt.bridge.model.RateLimitException;
+import mqtt.bridge.model.ValidationError;
+import mqtt.bridge.service.BridgeMetrics;
+import mqtt.bridge.service.BridgeRegistry;
+import mqtt.bridge.service.FanoutSubscriber;
+import mqtt.bridge.service.IdempotencyCache;
 import mqtt.bridge.service.MQTTClient;
+import mqtt.bridge.service.PayloadCompressor;
+import mqtt.bridge.service.PayloadFormats;
+import mqtt.bridge.service.PayloadTransformation;
 import mqtt.bridge.service.ServiceOperation;
 import mqtt.bridge.service.ServiceStatus;
+import mqtt.bridge.service.TopicFilters;
+import mqtt.bridge.service.TopicTemplate;
 
 @Slf4j
 @RestController
 public class REST2MQTTBridgeRestController {
 
+    private static final String HEADER_REQUEST_ID = "X-Request-Id";
+    private static final String HEADER_PAYLOAD_FORMAT = "X-Payload-Format";
+    private static final String HEADER_QOS = "X-QoS";
+    private static final String HEADER_RETAIN = "X-Retain";
+    private static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String HEADER_IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    // estimated heap size of a remembered delivery id
+    private static final long DELIVERY_ID_SIZE = 16;
+
+    // answered with 429 and the time after which the client should retry
+    @SuppressWarnings("serial")
+    private static class TooManyRequestsException extends ResponseStatusException {
+        private final long retryAfter;
+
+        TooManyRequestsException(RateLimitException cause) {
+            super(HttpStatus.TOO_MANY_REQUESTS, cause.getLocalizedMessage(), cause);
+            this.retryAfter = cause.getRetryAfterSeconds();
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+            return headers;
+        }
+    }
+
     @Autowired
-    MQTTClient mqttClient;
+    BridgeRegistry bridgeRegistry;
 
     @Autowired
     C8yAgent c8yAgent;
 
+    @Autowired
+    ContextService<UserCredentials> contextService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${bridge.reply.timeout:10000}")
+    private long replyTimeout;
+
+    @Value("${bridge.reply.max-timeout:60000}")
+    private long replyMaxTimeout;
+
+    @Value("${bridge.sse.timeout:1800000}")
+    private long sseTimeout;
+
+    @Value("${bridge.ingest.timeout:30000}")
+    private long ingestTimeout;
+
+    @Value("${bridge.ingest.max-payload-size:1048576}")
+    private int ingestMaxPayloadSize;
+
+    // requests are routed to the bridge of the tenant of the calling user
+    private MQTTClient getMQTTClient() {
+        String tenant = contextService.getContext().getTenant();
+        MQTTClient mqttClient = bridgeRegistry.get(tenant);
+        if (mqttClient == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No bridge available for tenant " + tenant);
+        }
+        return mqttClient;
+    }
+
+    private PublishOptions publishOptions(HttpServletRequest request) {
+        PayloadFormat format = null;
+        String formatName = request.getHeader(HEADER_PAYLOAD_FORMAT);
+        if (formatName != null) {
+            format = PayloadFormat.fromName(formatName);
+            if (format == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported payload format " + formatName);
+            }
+        }
+        return new PublishOptions(format, requestProperties(request), contextService.getContext().getUsername(),
+                qos(request), retain(request));
+    }
+
+    // header or query parameter, the header wins
+    private static String headerOrParameter(HttpServletRequest request, String header, String parameter) {
+        String value = request.getHeader(header);
+        return value != null ? value : request.getParameter(parameter);
+    }
+
+    // 0, 1, 2 or the name of the QoS level
+    private static QOS qos(HttpServletRequest request) {
+        String value = headerOrParameter(request, HEADER_QOS, "qos");
+        if (value == null) {
+            return null;
+        }
+        for (QOS qos : QOS.values()) {
+            if (value.equals(Integer.toString(qos.ordinal())) || value.equalsIgnoreCase(qos.name())) {
+                return qos;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported QoS " + value);
+    }
+
+    private static Boolean retain(HttpServletRequest request) {
+        String value = headerOrParameter(request, HEADER_RETAIN, "retain");
+        if (value == null) {
+            return null;
+        }
+        if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Retain must be true or false");
+        }
+        return Boolean.valueOf(value);
+    }
+
+    // with an Idempotency-Key the request is only executed once per key and user within the window
+    private <T> IdempotencyCache.Result<T> idempotent(MQTTClient mqttClient, HttpServletRequest request,
+            String endpoint, PublishOptions options, byte[] body, Callable<T> call, ToLongFunction<? super T> sizeOf)
+            throws Exception {
+        String key = request.getHeader(HEADER_IDEMPOTENCY_KEY);
+        if (key == null) {
+            return new IdempotencyCache.Result<>(call.call(), false);
+        }
+        if (key.isEmpty() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Idempotency-Key must have 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        // a key reused with a different body or different options is a different request
+        String fingerprint = endpoint + "#" + options.getFormat() + "#" + options.getQos() + "#"
+                + options.getRetain() + "#" + hash(body);
+        return mqttClient.getIdempotencyCache().execute(options.getClient() + "\n" + key, fingerprint, call,
+                sizeOf);
+    }
+
+    private static String hash(byte[] body) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the body of a streamed request is only buffered with an Idempotency-Key, to hash it
+    private static byte[] idempotentBody(HttpServletRequest request) throws IOException {
+        return request.getHeader(HEADER_IDEMPOTENCY_KEY) != null
+                ? StreamUtils.copyToByteArray(request.getInputStream())
+                : null;
+    }
+
+    private static InputStream body(HttpServletRequest request, byte[] buffered) throws IOException {
+        return buffered != null ? new ByteArrayInputStream(buffered) : request.getInputStream();
+    }
+
+    private static long sizeOf(List<PublishResult> results) {
+        long size = 16 + 8L * results.size();
+        for (PublishResult result : results) {
+            size += result.estimatedSize();
+        }
+        return size;
+    }
+
+    private static ResponseEntity.BodyBuilder responseStatus(HttpStatus status, IdempotencyCache.Result<?> result) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(status);
+        if (result.isReplayed()) {
+            builder.header(HEADER_IDEMPOTENT_REPLAYED, "true");
+        }
+        return builder;
+    }
+
+    // metadata of the request, sent as user properties with MQTT 5, the map is only built when sent
+    private Supplier<Map<String, String>> requestProperties(HttpServletRequest request) {
+        UserCredentials credentials = contextService.getContext();
+        String tenant = credentials.getTenant();
+        String user = credentials.getUsername();
+        long receivedAt = System.currentTimeMillis();
+        String requestId = request.getHeader(HEADER_REQUEST_ID);
+        return () -> {
+            Map<String, String> properties = new HashMap<>();
+            properties.put("tenant", tenant);
+            properties.put("user", user);
+            properties.put("receivedAt", Instant.ofEpochMilli(receivedAt).toString());
+            if (requestId != null) {
+                properties.put("requestId", requestId);
+            }
+            return properties;
+        };
+    }
 
     @RequestMapping(value = "/configuration/connection", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ConfigurationConnection> getConnectionConfiguration() {
+        MQTTClient mqttClient = getMQTTClient();
         log.info("Get connection details");
         try {
             final ConfigurationConnection configuration = mqttClient.loadConnectionConfiguration();
@@ -56,6 +277,7 @@ public class REST2MQTTBridgeRestController {
 
     @RequestMapping(value = "/configuration/connection", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<HttpStatus> configureConnectionToBroker(@Valid @RequestBody ConfigurationConnection configuration) {
+        MQTTClient mqttClient = getMQTTClient();
         
         // don't modify original copy
         ConfigurationConnection configurationClone = (ConfigurationConnection) configuration.clone();
@@ -72,6 +294,7 @@ public class REST2MQTTBridgeRestController {
 
     @RequestMapping(value = "/configuration/service", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ServiceConfiguration> getServiceConfiguration() {
+        MQTTClient mqttClient = getMQTTClient();
         log.info("Get connection details");
         try {
             final ServiceConfiguration configuration = mqttClient.loadServiceConfiguration();
@@ -88,9 +311,30 @@ public class REST2MQTTBridgeRestController {
 
     @RequestMapping(value = "/configuration/service", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<HttpStatus> configureConnectionToBroker(@Valid @RequestBody ServiceConfiguration configuration) {
+        MQTTClient mqttClient = getMQTTClient();
         
         // don't modify original copy
         log.info("Post service configuration: {}", configuration.toString());
+        Set<ValidationError> errors = TopicTemplate.validate(configuration.topicTemplates);
+        if (!errors.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid topic templates: " + errors);
+        }
+        errors = PayloadCompressor.validate(configuration.compressionRules);
+        if (!errors.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid compression rules: " + errors);
+        }
+        errors = PayloadFormats.validate(configuration.payloadFormatRules);
+        if (!errors.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid payload format rules: " + errors);
+        }
+        for (TransformationRule rule : configuration.transformationRules) {
+            try {
+                PayloadTransformation.compile(rule);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Invalid transformation rule: " + e.getMessage());
+            }
+        }
         try {
             mqttClient.saveServiceConfiguration(configuration);
             return ResponseEntity.status(HttpStatus.CREATED).build();
@@ -102,6 +346,7 @@ public class REST2MQTTBridgeRestController {
 
     @RequestMapping(value = "/operation", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<HttpStatus> runOperation(@Valid @RequestBody ServiceOperation operation) {
+        MQTTClient mqttClient = getMQTTClient();
         log.info("Post operation: {}", operation.toString());
         try {
             mqttClient.runOperation(operation);
@@ -114,23 +359,207 @@ public class REST2MQTTBridgeRestController {
 
     @RequestMapping(value = "/payload/{topic}", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Long> forwardPayload(@PathVariable String topic,
-            @Valid @RequestBody Map<String, Object> payload) {
+            @RequestBody byte[] payload, HttpServletRequest request) {
+        MQTTClient mqttClient = getMQTTClient();
+        Timer.Sample sample = mqttClient.getMetrics().start();
+        try {
+            log.debug("Forward payload of {} bytes to topic {}", payload.length, topic);
+            String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+            String endpoint = "payload/" + topic + (contentEncoding != null ? "#" + contentEncoding : "");
+            PublishOptions options = publishOptions(request);
+            IdempotencyCache.Result<Long> result = idempotent(mqttClient, request, endpoint, options, payload, () -> {
+                if (contentEncoding == null || "identity".equalsIgnoreCase(contentEncoding)) {
+                    return mqttClient.forwardPayload(topic, payload, options);
+                }
+                // compressed bodies are forwarded as they are
+                Compression compression = Compression.fromEncoding(contentEncoding);
+                if (compression == null) {
+                    throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                            "Unsupported Content-Encoding " + contentEncoding);
+                }
+                return mqttClient.forwardEncodedPayload(topic, payload, compression, options);
+            }, deliveryId -> DELIVERY_ID_SIZE);
+            mqttClient.getMetrics().recordRequest(sample, "payload", BridgeMetrics.OUTCOME_SUCCESS);
+            // a delivery id is only returned when the payload was published asynchronously
+            Long deliveryId = result.getValue();
+            return responseStatus(deliveryId != null ? HttpStatus.ACCEPTED : HttpStatus.OK, result).body(deliveryId);
+        } catch (Exception ex) {
+            mqttClient.getMetrics().recordRequest(sample, "payload", BridgeMetrics.OUTCOME_FAILURE);
+            if (ex instanceof ResponseStatusException)
+                throw (ResponseStatusException) ex;
+            else if (ex instanceof RateLimitException)
+                throw new TooManyRequestsException((RateLimitException) ex);
+            else if (ex instanceof MqttException
+                    && ((MqttException) ex).getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT)
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, ex.getLocalizedMessage());
+            else if (ex instanceof RuntimeException)
+                throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getLocalizedMessage());
+            else if (ex instanceof JsonProcessingException)
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getLocalizedMessage());
+            else
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, ex.getLocalizedMessage());
+        }
+    }
+
+    @RequestMapping(value = "/payload", method = RequestMethod.POST, consumes = { MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE }, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<PublishResult>> forwardPayloadBatch(HttpServletRequest request) {
+        MQTTClient mqttClient = getMQTTClient();
+        Timer.Sample sample = mqttClient.getMetrics().start();
+        try {
+            PublishOptions options = publishOptions(request);
+            byte[] buffered = idempotentBody(request);
+            IdempotencyCache.Result<List<PublishResult>> result = idempotent(mqttClient, request, "payload",
+                    options, buffered, () -> mqttClient.forwardBatch(body(request, buffered), options),
+                    REST2MQTTBridgeRestController::sizeOf);
+            List<PublishResult> results = result.getValue();
+            log.debug("Forwarded batch of {} records", results.size());
+            boolean allSuccessful = results.stream().allMatch(PublishResult::isSuccess);
+            mqttClient.getMetrics().recordRequest(sample, "batch",
+                    allSuccessful ? BridgeMetrics.OUTCOME_SUCCESS : BridgeMetrics.OUTCOME_FAILURE);
+            return responseStatus(allSuccessful ? HttpStatus.OK : HttpStatus.MULTI_STATUS, result).body(results);
+        } catch (Exception ex) {
+            mqttClient.getMetrics().recordRequest(sample, "batch", BridgeMetrics.OUTCOME_FAILURE);
+            if (ex instanceof ResponseStatusException)
+                throw (ResponseStatusException) ex;
+            else if (ex instanceof RuntimeException)
+                throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getLocalizedMessage());
+            else
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, ex.getLocalizedMessage());
+        }
+    }
+
+    @RequestMapping(value = "/template/{name}", method = RequestMethod.POST, consumes = { MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE }, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<PublishResult>> forwardTemplate(@PathVariable String name, HttpServletRequest request) {
+        MQTTClient mqttClient = getMQTTClient();
+        TopicTemplate template = mqttClient.getTopicTemplate(name);
+        if (template == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Topic template " + name + " not found");
+        }
+        Timer.Sample sample = mqttClient.getMetrics().start();
         try {
-            log.debug("Forward payload {} to topic {}", payload, topic);
-            Long result = mqttClient.forwardPayload(topic, payload);
-            return ResponseEntity.status(HttpStatus.OK).body(result);
+            PublishOptions options = publishOptions(request);
+            byte[] buffered = idempotentBody(request);
+            IdempotencyCache.Result<List<PublishResult>> result = idempotent(mqttClient, request, "template/" + name,
+                    options, buffered, () -> mqttClient.forwardTemplate(template, body(request, buffered), options),
+                    REST2MQTTBridgeRestController::sizeOf);
+            List<PublishResult> results = result.getValue();
+            log.debug("Forwarded {} payloads with template {}", results.size(), name);
+            boolean allSuccessful = results.stream().allMatch(PublishResult::isSuccess);
+            mqttClient.getMetrics().recordRequest(sample, "template",
+                    allSuccessful ? BridgeMetrics.OUTCOME_SUCCESS : BridgeMetrics.OUTCOME_FAILURE);
+            return responseStatus(allSuccessful ? HttpStatus.OK : HttpStatus.MULTI_STATUS, result).body(results);
         } catch (Exception ex) {
-            if (ex instanceof RuntimeException)
+            mqttClient.getMetrics().recordRequest(sample, "template", BridgeMetrics.OUTCOME_FAILURE);
+            if (ex instanceof ResponseStatusException)
+                throw (ResponseStatusException) ex;
+            else if (ex instanceof RuntimeException)
                 throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getLocalizedMessage());
+            else
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, ex.getLocalizedMessage());
+        }
+    }
+
+    // publishes a request and answers with the reply, no thread is held while waiting
+    @RequestMapping(value = "/request/{topic}", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> request(@PathVariable String topic, @RequestBody byte[] payload,
+            @RequestParam(required = false) Long timeout, HttpServletRequest request) {
+        MQTTClient mqttClient = getMQTTClient();
+        long waitFor = timeout != null ? timeout : replyTimeout;
+        if (waitFor <= 0 || waitFor > replyMaxTimeout) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Timeout must be between 1 and " + replyMaxTimeout + " ms");
+        }
+        Timer.Sample sample = mqttClient.getMetrics().start();
+        try {
+            return mqttClient.request(topic, payload, waitFor, publishOptions(request)).handle((reply, ex) -> {
+                if (ex == null) {
+                    mqttClient.getMetrics().recordRequest(sample, "request", BridgeMetrics.OUTCOME_SUCCESS);
+                    return ResponseEntity.ok(reply);
+                }
+                mqttClient.getMetrics().recordRequest(sample, "request", BridgeMetrics.OUTCOME_FAILURE);
+                if (ex instanceof TimeoutException)
+                    throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, ex.getLocalizedMessage());
+                else
+                    throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, ex.getLocalizedMessage());
+            });
+        } catch (Exception ex) {
+            mqttClient.getMetrics().recordRequest(sample, "request", BridgeMetrics.OUTCOME_FAILURE);
+            if (ex instanceof ResponseStatusException)
+                throw (ResponseStatusException) ex;
+            else if (ex instanceof RateLimitException)
+                throw new TooManyRequestsException((RateLimitException) ex);
+            else if (ex instanceof MqttException)
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, ex.getLocalizedMessage());
             else if (ex instanceof JsonProcessingException)
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getLocalizedMessage());
+            else if (ex instanceof RuntimeException)
+                throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getLocalizedMessage());
             else
                 throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, ex.getLocalizedMessage());
         }
     }
 
+    // streams the messages of the topic filters as server-sent events, the client reconnects after the timeout
+    @RequestMapping(value = "/subscribe", method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam("topic") List<String> filters) {
+        MQTTClient mqttClient = getMQTTClient();
+        for (String filter : filters) {
+            Set<ValidationError> errors = TopicFilters.validate(filter);
+            if (filter.isEmpty() || !errors.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Invalid topic filter " + filter + ": " + errors);
+            }
+        }
+        SseEmitter emitter = new SseEmitter(sseTimeout);
+        FanoutSubscriber subscriber = mqttClient.addSubscriber(filters, new FanoutSubscriber.Sink() {
+            @Override
+            public void send(String event) throws IOException {
+                emitter.send(SseEmitter.event().data(event, MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close() {
+                emitter.complete();
+            }
+        });
+        emitter.onCompletion(() -> mqttClient.removeSubscriber(subscriber));
+        emitter.onTimeout(() -> mqttClient.removeSubscriber(subscriber));
+        emitter.onError(e -> mqttClient.removeSubscriber(subscriber));
+        return emitter;
+    }
+
+    // non-blocking variant of /payload/{topic}, the request does not hold a thread while it waits for the broker
+    @RequestMapping(value = "/ingest/{topic}", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void ingestPayload(@PathVariable String topic, HttpServletRequest request) {
+        MQTTClient mqttClient = getMQTTClient();
+        try {
+            mqttClient.checkRateLimit(topic, contextService.getContext().getUsername());
+        } catch (RateLimitException ex) {
+            throw new TooManyRequestsException(ex);
+        }
+        // parsed before the request turns asynchronous, invalid options are answered with 400
+        PublishOptions options = publishOptions(request);
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(ingestTimeout);
+        new PayloadIngestListener(mqttClient, objectMapper, topic, options, asyncContext, ingestMaxPayloadSize)
+                .start();
+    }
+
+    @RequestMapping(value = "/delivery/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<DeliveryStatus> getDeliveryStatus(@PathVariable long id) {
+        MQTTClient mqttClient = getMQTTClient();
+        DeliveryStatus status = mqttClient.getDeliveryStatus(id);
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Delivery " + id + " not found");
+        }
+        return new ResponseEntity<>(status, HttpStatus.OK);
+    }
+
     @RequestMapping(value = "/status", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<ServiceStatus> getStatus() {
+        MQTTClient mqttClient = getMQTTClient();
         ServiceStatus st = mqttClient.getServiceStatus();
         log.info("Get status: {}", st);
         return new ResponseEntity<>(st, HttpStatus.OK);
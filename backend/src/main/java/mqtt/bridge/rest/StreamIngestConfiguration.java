@@ -0,0 +1,57 @@
+package mqtt.bridge.rest;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import com.cumulocity.microservice.context.ContextService;
+import com.cumulocity.microservice.context.credentials.UserCredentials;
+
+import mqtt.bridge.service.BridgeRegistry;
+
+@Configuration
+@EnableWebSocket
+public class StreamIngestConfiguration implements WebSocketConfigurer {
+
+    @Autowired
+    StreamIngestHandler streamIngestHandler;
+
+    @Autowired
+    BridgeRegistry bridgeRegistry;
+
+    @Autowired
+    ContextService<UserCredentials> contextService;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(streamIngestHandler, "/stream").addInterceptors(new HandshakeInterceptor() {
+            // the tenant is only known while the handshake request is processed
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                    WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                String tenant = contextService.getContext().getTenant();
+                if (bridgeRegistry.get(tenant) == null) {
+                    response.setStatusCode(HttpStatus.NOT_FOUND);
+                    return false;
+                }
+                attributes.put(StreamIngestHandler.ATTRIBUTE_TENANT, tenant);
+                attributes.put(StreamIngestHandler.ATTRIBUTE_USER, contextService.getContext().getUsername());
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                    WebSocketHandler wsHandler, Exception exception) {
+            }
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package mqtt.bridge.rest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import mqtt.bridge.model.RateLimitException;
+import mqtt.bridge.model.StreamFrame;
+import mqtt.bridge.model.StreamReply;
+import mqtt.bridge.service.BridgeRegistry;
+import mqtt.bridge.service.MQTTClient;
+import mqtt.bridge.service.PublishWindow;
+
+/**
+ * Streaming ingestion over a WebSocket. Every text message contains one or
+ * more frames as NDJSON, each frame is answered with an ack or an error.
+ * The client may only send as many frames as it has credits, it receives the
+ * initial credits on connect and one credit back with every reply.
+ */
+@Slf4j
+@Component
+public class StreamIngestHandler extends TextWebSocketHandler {
+
+    public static final String ATTRIBUTE_TENANT = "tenant";
+    public static final String ATTRIBUTE_USER = "user";
+
+    @Autowired
+    BridgeRegistry bridgeRegistry;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${bridge.stream.credits:100}")
+    private int initialCredits;
+
+    @Value("${bridge.stream.send-time-limit:10000}")
+    private int sendTimeLimit;
+
+    @Value("${bridge.stream.buffer-size-limit:524288}")
+    private int bufferSizeLimit;
+
+    private final Map<String, StreamSession> sessions = new ConcurrentHashMap<>();
+
+    @AllArgsConstructor
+    private static class StreamSession {
+        final WebSocketSession session;
+        final MQTTClient mqttClient;
+        final AtomicInteger credits;
+        final String user;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        String tenant = (String) session.getAttributes().get(ATTRIBUTE_TENANT);
+        MQTTClient mqttClient = tenant == null ? null : bridgeRegistry.get(tenant);
+        if (mqttClient == null) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("No bridge available for tenant " + tenant));
+            return;
+        }
+        // replies are sent from the callbacks of the broker, the decorator serializes them
+        StreamSession streamSession = new StreamSession(
+                new ConcurrentWebSocketSessionDecorator(session, sendTimeLimit, bufferSizeLimit), mqttClient,
+                new AtomicInteger(initialCredits), (String) session.getAttributes().get(ATTRIBUTE_USER));
+        sessions.put(session.getId(), streamSession);
+        log.info("Opened stream {} for tenant {}", session.getId(), tenant);
+        send(streamSession, StreamReply.credit(initialCredits));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        StreamSession streamSession = sessions.get(session.getId());
+        if (streamSession == null) {
+            return;
+        }
+        try (MappingIterator<StreamFrame> frames = objectMapper.readerFor(StreamFrame.class)
+                .readValues(message.getPayload())) {
+            while (frames.hasNextValue()) {
+                StreamFrame frame = frames.nextValue();
+                if (streamSession.credits.getAndDecrement() <= 0) {
+                    streamSession.credits.incrementAndGet();
+                    send(streamSession, StreamReply.error(frame.getId(), "No credits left"));
+                    continue;
+                }
+                if (frame.getTopic() != null && !withinRateLimit(streamSession, frame)) {
+                    continue;
+                }
+                PublishWindow window = streamSession.mqttClient.getPublishWindow(frame.getQos());
+                if (!window.acquire(() -> publish(streamSession, window, frame))) {
+                    reply(streamSession, StreamReply.error(frame.getId(), "Too many messages waiting for the broker"));
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // the rest of the message cannot be resynchronized after a syntax error
+            send(streamSession, StreamReply.error(null, e.getOriginalMessage()));
+        }
+    }
+
+    private boolean withinRateLimit(StreamSession streamSession, StreamFrame frame) {
+        try {
+            streamSession.mqttClient.checkRateLimit(frame.getTopic(), streamSession.user);
+            return true;
+        } catch (RateLimitException e) {
+            reply(streamSession, StreamReply.error(frame.getId(), e.getLocalizedMessage()));
+            return false;
+        }
+    }
+
+    private void publish(StreamSession streamSession, PublishWindow window, StreamFrame frame) {
+        streamSession.mqttClient.forwardRecordAsync(frame).whenComplete((result, ex) -> {
+            window.release();
+            if (ex == null) {
+                reply(streamSession, StreamReply.ack(frame.getId()));
+            } else {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                log.warn("Error forwarding frame {} to topic {}: {}", frame.getId(), frame.getTopic(),
+                        cause.getMessage());
+                reply(streamSession, StreamReply.error(frame.getId(), cause.getLocalizedMessage()));
+            }
+        });
+    }
+
+    // every reply returns the credit of its frame
+    private void reply(StreamSession streamSession, StreamReply reply) {
+        streamSession.credits.incrementAndGet();
+        send(streamSession, reply);
+    }
+
+    private void send(StreamSession streamSession, StreamReply reply) {
+        if (!streamSession.session.isOpen()) {
+            return;
+        }
+        try {
+            streamSession.session.sendMessage(new TextMessage(objectMapper.writeValueAsString(reply)));
+        } catch (IOException | IllegalStateException e) {
+            log.warn("Error sending reply on stream {}: {}", streamSession.session.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        sessions.remove(session.getId());
+        log.info("Closed stream {}: {}", session.getId(), status);
+    }
+}
@@ -0,0 +1,37 @@
+package mqtt.bridge.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between reconnect attempts. The first retry happens immediately,
+ * afterwards the delay grows exponentially up to maxDelay. The jitter spreads
+ * the attempts of many instances that lost their connection at the same time.
+ */
+public class Backoff {
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private int attempt;
+
+    public Backoff(long initialDelay, long maxDelay) {
+        this.initialDelay = Math.max(initialDelay, 1);
+        this.maxDelay = Math.max(maxDelay, this.initialDelay);
+    }
+
+    /**
+     * @return the delay in ms before the next attempt
+     */
+    public long nextDelay() {
+        int n = attempt++;
+        if (n == 0) {
+            return 0;
+        }
+        long ceiling = Math.min(maxDelay, initialDelay << Math.min(n - 1, 30));
+        // equal jitter: at least half of the exponential delay, at most all of it
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    public void reset() {
+        attempt = 0;
+    }
+}
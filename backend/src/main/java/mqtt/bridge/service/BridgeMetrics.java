@@ -0,0 +1,251 @@
+package mqtt.bridge.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import mqtt.bridge.model.QOS;
+
+/**
+ * Meters of the bridge of one tenant, scraped through the prometheus actuator
+ * endpoint. All meters are tagged with the tenant.
+ */
+public class BridgeMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_FAILURE = "failure";
+
+    private static final String PREFIX = "rest2mqtt.";
+
+    private final MeterRegistry registry;
+    private final String tenant;
+    private final Tags tags;
+
+    // meters of the publish path are created once, recording only looks them up by their tag values
+    private final Map<String, Timer[]> requestTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer[]> publishTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> c8yTimers = new ConcurrentHashMap<>();
+    private final Timer[] deliveryTimers;
+    private final Timer[] connectTimers;
+    private final DistributionSummary payloadSize;
+    private final Counter reconnects;
+    private final Timer reconnectDuration;
+    private final Counter rateLimited;
+    private final Counter disconnects;
+
+    public BridgeMetrics(MeterRegistry registry, String tenant) {
+        this.registry = registry;
+        this.tenant = tenant;
+        this.tags = Tags.of("tenant", tenant);
+        deliveryTimers = byOutcome(outcome -> Timer.builder(PREFIX + "delivery")
+                .description("Time from an asynchronous publish until it was acknowledged or failed")
+                .tags(tags)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+        connectTimers = byOutcome(outcome -> Timer.builder(PREFIX + "connect")
+                .description("Duration of connecting to the broker")
+                .tags(tags)
+                .tag("outcome", outcome)
+                .register(registry));
+        payloadSize = DistributionSummary.builder(PREFIX + "payload.size")
+                .description("Size of published payloads")
+                .tags(tags)
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(registry);
+        reconnects = Counter.builder(PREFIX + "reconnects")
+                .description("Number of connections to the broker that were re-established")
+                .tags(tags)
+                .register(registry);
+        reconnectDuration = Timer.builder(PREFIX + "reconnect.duration")
+                .description("Time from losing the connection until all connections of the pool were re-established")
+                .tags(tags)
+                .register(registry);
+        rateLimited = Counter.builder(PREFIX + "rate.limited")
+                .description("Number of messages rejected by a rate limit")
+                .tags(tags)
+                .register(registry);
+        disconnects = Counter.builder(PREFIX + "disconnects")
+                .description("Number of connections to the broker that were closed")
+                .tags(tags)
+                .register(registry);
+    }
+
+    // index 0 is the meter of OUTCOME_SUCCESS, index 1 of OUTCOME_FAILURE
+    private static Timer[] byOutcome(Function<String, Timer> timer) {
+        return new Timer[] { timer.apply(OUTCOME_SUCCESS), timer.apply(OUTCOME_FAILURE) };
+    }
+
+    private static Timer forOutcome(Timer[] timers, String outcome) {
+        return timers[OUTCOME_SUCCESS.equals(outcome) ? 0 : 1];
+    }
+
+    // removes the meters of the tenant when its bridge is torn down
+    public void close() {
+        registry.getMeters().stream()
+                .filter(meter -> tenant.equals(meter.getId().getTag("tenant")))
+                .forEach(registry::remove);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    public void recordRequest(Timer.Sample sample, String endpoint, String outcome) {
+        Timer[] timers = requestTimers.get(endpoint);
+        if (timers == null) {
+            timers = requestTimers.computeIfAbsent(endpoint, this::newRequestTimers);
+        }
+        sample.stop(forOutcome(timers, outcome));
+    }
+
+    private Timer[] newRequestTimers(String endpoint) {
+        return byOutcome(outcome -> Timer.builder(PREFIX + "requests")
+                .description("Duration of payload requests")
+                .tags(tags)
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void recordPublish(Timer.Sample sample, String mode, String outcome) {
+        Timer[] timers = publishTimers.get(mode);
+        if (timers == null) {
+            timers = publishTimers.computeIfAbsent(mode, this::newPublishTimers);
+        }
+        sample.stop(forOutcome(timers, outcome));
+    }
+
+    private Timer[] newPublishTimers(String mode) {
+        return byOutcome(outcome -> Timer.builder(PREFIX + "publish")
+                .description("Duration of publishing a message to the broker")
+                .tags(tags)
+                .tag("mode", mode)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public void recordPayloadSize(int bytes) {
+        payloadSize.record(bytes);
+    }
+
+    public void recordDelivery(String outcome, long durationNanos) {
+        forOutcome(deliveryTimers, outcome).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordConnect(Timer.Sample sample, String outcome) {
+        sample.stop(forOutcome(connectTimers, outcome));
+    }
+
+    public void recordReconnect() {
+        reconnects.increment();
+    }
+
+    public void recordTimeToReconnect(long durationNanos) {
+        reconnectDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRateLimited() {
+        rateLimited.increment();
+    }
+
+    public void recordDisconnect() {
+        disconnects.increment();
+    }
+
+    public Timer c8yTimer(String operation) {
+        Timer timer = c8yTimers.get(operation);
+        if (timer == null) {
+            timer = c8yTimers.computeIfAbsent(operation, o -> Timer.builder(PREFIX + "c8y.requests")
+                    .description("Duration of calls to the Cumulocity platform")
+                    .tags(tags)
+                    .tag("operation", o)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        return timer;
+    }
+
+    public void registerJournalMeters(PublishJournal journal, QOS qos) {
+        Gauge.builder(PREFIX + "journal.pending", journal, PublishJournal::getPending)
+                .description("Number of journaled messages waiting for replay")
+                .tags(tags)
+                .tag("qos", qos.name())
+                .strongReference(true)
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "journal.evicted", journal, PublishJournal::getEvicted)
+                .description("Number of journaled messages dropped because the journal was full")
+                .tags(tags)
+                .tag("qos", qos.name())
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "journal.discarded", journal, PublishJournal::getDiscarded)
+                .description("Number of journaled messages dropped because the broker rejected them")
+                .tags(tags)
+                .tag("qos", qos.name())
+                .register(registry);
+    }
+
+    public void registerPublishWindowMeters(PublishWindow window, QOS qos) {
+        Gauge.builder(PREFIX + "ingest.inflight", window, PublishWindow::getInUse)
+                .description("Publishes of the non-blocking ingestion waiting for the broker")
+                .tags(tags)
+                .tag("lane", qos.name())
+                .register(registry);
+        Gauge.builder(PREFIX + "ingest.waiting", window, PublishWindow::getWaiting)
+                .description("Requests of the non-blocking ingestion waiting for a free slot in the inflight window")
+                .tags(tags)
+                .tag("lane", qos.name())
+                .register(registry);
+    }
+
+    public void registerIdempotencyMeters(IdempotencyCache cache) {
+        Gauge.builder(PREFIX + "idempotency.keys", cache, IdempotencyCache::size)
+                .description("Number of remembered idempotency keys")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder(PREFIX + "idempotency.bytes", cache, IdempotencyCache::getBytes)
+                .description("Estimated heap size of the remembered outcomes")
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder(PREFIX + "idempotency.replayed", cache, IdempotencyCache::getReplayed)
+                .description("Number of requests answered from the idempotency cache without publishing")
+                .tags(tags)
+                .register(registry);
+    }
+
+    public void registerReplyMeters(ReplyTracker tracker) {
+        Gauge.builder(PREFIX + "request.pending", tracker, ReplyTracker::getPending)
+                .description("Requests waiting for a reply")
+                .tags(tags)
+                .register(registry);
+    }
+
+    public void registerFanoutGauge(Supplier<Number> subscribers) {
+        Gauge.builder(PREFIX + "fanout.listeners", subscribers)
+                .description("Number of connected listeners of /subscribe")
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    public void registerConnectionGauge(Supplier<Number> connectedClients) {
+        Gauge.builder(PREFIX + "connections", connectedClients)
+                .description("Number of connected members of the connection pool")
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+    }
+}
@@ -0,0 +1,71 @@
+package mqtt.bridge.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds an isolated bridge, i.e. an MQTTClient with its own configuration,
+ * connection pool, executor and metrics, for every subscribed tenant.
+ */
+@Slf4j
+@Service
+public class BridgeRegistry {
+
+    private final Map<String, MQTTClient> bridges = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ObjectProvider<MQTTClient> mqttClientProvider;
+
+    public MQTTClient addTenant(String tenant) {
+        return bridges.computeIfAbsent(tenant, t -> {
+            log.info("Creating bridge for tenant {}", t);
+            return mqttClientProvider.getObject(t);
+        });
+    }
+
+    public void removeTenant(String tenant) {
+        MQTTClient mqttClient = bridges.remove(tenant);
+        if (mqttClient != null) {
+            log.info("Removing bridge for tenant {}", tenant);
+            mqttClient.shutdown();
+        }
+    }
+
+    /**
+     * @return the bridge of the tenant or null if the tenant is not subscribed
+     */
+    public MQTTClient get(String tenant) {
+        return tenant == null ? null : bridges.get(tenant);
+    }
+
+    // every bridge runs its housekeeping on its own executor, a slow tenant can't delay the others
+    @Scheduled(fixedRate = 30000)
+    public void runHousekeeping() {
+        bridges.values().forEach(MQTTClient::submitHousekeeping);
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void flushEvents() {
+        bridges.values().forEach(MQTTClient::submitEventFlush);
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void purgeDeliveries() {
+        bridges.values().forEach(MQTTClient::purgeDeliveries);
+    }
+
+    @PreDestroy
+    private void stop() {
+        bridges.values().forEach(MQTTClient::shutdown);
+        bridges.clear();
+    }
+}
@@ -0,0 +1,79 @@
+package mqtt.bridge.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.net.SocketFactory;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import mqtt.bridge.configuration.ConfigurationConnection;
+
+/**
+ * A single connection to the broker, independent of the protocol version.
+ * Errors of all versions are reported as v3 {@link MqttException} with the
+ * same reason codes.
+ */
+public interface BrokerClient {
+
+    interface Listener {
+        void connectionLost(BrokerClient client, Throwable cause);
+
+        void messageArrived(String topic, MqttMessage message);
+    }
+
+    String getServerURI();
+
+    String getClientId();
+
+    int getVersion();
+
+    boolean isConnected();
+
+    void connect(ConfigurationConnection configuration, SocketFactory socketFactory) throws MqttException;
+
+    /**
+     * @param userProperties only sent with MQTT 5, may be null
+     * @return completes when the broker acknowledged the message
+     */
+    CompletableFuture<Void> publish(String topic, MqttMessage message, Map<String, String> userProperties)
+            throws MqttException;
+
+    /**
+     * Publishes a request, the response topic and the correlation data are
+     * only sent with MQTT 5.
+     */
+    default CompletableFuture<Void> publish(String topic, MqttMessage message, Map<String, String> userProperties,
+            String responseTopic, byte[] correlationData) throws MqttException {
+        return publish(topic, message, userProperties);
+    }
+
+    void subscribe(String[] topics, int[] qos) throws MqttException;
+
+    void unsubscribe(String topic) throws MqttException;
+
+    void disconnect() throws MqttException;
+
+    void close() throws MqttException;
+
+    /**
+     * @return the number of messages that may be in flight on this connection
+     */
+    int getInflightLimit();
+
+    static void await(CompletableFuture<Void> future) throws MqttException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_EXCEPTION, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MqttException) {
+                throw (MqttException) e.getCause();
+            }
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_EXCEPTION, e.getCause());
+        }
+    }
+}
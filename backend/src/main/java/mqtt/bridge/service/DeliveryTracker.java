@@ -0,0 +1,102 @@
+package mqtt.bridge.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+import mqtt.bridge.model.DeliveryState;
+import mqtt.bridge.model.DeliveryStatus;
+
+/**
+ * Keeps track of asynchronous publishes. Every publish gets a delivery id that
+ * can be queried until the outcome has been retained for RETENTION_MS. A
+ * delivery without outcome after PENDING_TIMEOUT_MS, e.g. because the client
+ * was closed, is marked as failed.
+ */
+@Slf4j
+public class DeliveryTracker {
+
+    private static final long RETENTION_MS = 10 * 60 * 1000;
+    private static final long PENDING_TIMEOUT_MS = 10 * 60 * 1000;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final BridgeMetrics metrics;
+    private final ConcurrentHashMap<Long, Delivery> deliveries = new ConcurrentHashMap<>();
+
+    private static class Delivery {
+        volatile DeliveryState state = DeliveryState.PENDING;
+        volatile String error;
+        volatile long completedAt;
+        final long startedNanos = System.nanoTime();
+    }
+
+    public DeliveryTracker(BridgeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public long register() {
+        long id = sequence.incrementAndGet();
+        deliveries.put(id, new Delivery());
+        return id;
+    }
+
+    public void remove(long id) {
+        deliveries.remove(id);
+    }
+
+    public void track(long id, CompletableFuture<Void> completion) {
+        completion.whenComplete((result, exception) -> {
+            if (exception == null) {
+                complete(id, DeliveryState.ACKED, null);
+            } else {
+                log.warn("Delivery {} failed: {}", id, exception.getMessage());
+                complete(id, DeliveryState.FAILED, exception.getLocalizedMessage());
+            }
+        });
+    }
+
+    private void complete(long id, DeliveryState state, String error) {
+        Delivery delivery = deliveries.get(id);
+        if (delivery != null) {
+            complete(delivery, state, error);
+        }
+    }
+
+    // the first outcome wins, a late callback doesn't change an expired delivery
+    private void complete(Delivery delivery, DeliveryState state, String error) {
+        synchronized (delivery) {
+            if (delivery.state != DeliveryState.PENDING) {
+                return;
+            }
+            delivery.error = error;
+            delivery.completedAt = System.currentTimeMillis();
+            delivery.state = state;
+        }
+        metrics.recordDelivery(state == DeliveryState.ACKED ? BridgeMetrics.OUTCOME_SUCCESS
+                : BridgeMetrics.OUTCOME_FAILURE, System.nanoTime() - delivery.startedNanos);
+    }
+
+    public DeliveryStatus getStatus(long id) {
+        Delivery delivery = deliveries.get(id);
+        if (delivery == null) {
+            return null;
+        }
+        return new DeliveryStatus(id, delivery.state, delivery.error);
+    }
+
+    public int purge() {
+        long now = System.nanoTime();
+        for (Delivery delivery : deliveries.values()) {
+            if (delivery.state == DeliveryState.PENDING
+                    && now - delivery.startedNanos > TimeUnit.MILLISECONDS.toNanos(PENDING_TIMEOUT_MS)) {
+                complete(delivery, DeliveryState.FAILED, "No acknowledgement from the broker");
+            }
+        }
+        long threshold = System.currentTimeMillis() - RETENTION_MS;
+        int before = deliveries.size();
+        deliveries.values().removeIf(d -> d.state != DeliveryState.PENDING && d.completedAt < threshold);
+        return before - deliveries.size();
+    }
+}
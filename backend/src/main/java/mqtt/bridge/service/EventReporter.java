@@ -0,0 +1,82 @@
+package mqtt.bridge.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.joda.time.DateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Buffers the status events of a bridge, so that they are sent to the
+ * platform in batches. Each flush sends at most MAX_EVENTS_PER_FLUSH events,
+ * the remaining ones are collapsed into one summary event per type. This keeps
+ * the number of platform calls bounded during reconnect storms.
+ */
+public class EventReporter {
+
+    private static final int MAX_EVENTS_PER_FLUSH = 10;
+    private static final int MAX_QUEUED_EVENTS = 1000;
+
+    @AllArgsConstructor
+    @Getter
+    public static class Event {
+        private String message;
+        private String type;
+        private DateTime time;
+    }
+
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    // events dropped because the queue was full, by type
+    private final Map<String, AtomicInteger> dropped = new ConcurrentHashMap<>();
+
+    public void report(String message, String type) {
+        if (queued.incrementAndGet() > MAX_QUEUED_EVENTS) {
+            queued.decrementAndGet();
+            dropped.computeIfAbsent(type, t -> new AtomicInteger()).incrementAndGet();
+            return;
+        }
+        queue.add(new Event(message, type, DateTime.now()));
+    }
+
+    /**
+     * @return the events to send, empty if nothing was reported since the last
+     *         call
+     */
+    public List<Event> drain() {
+        List<Event> events = new ArrayList<>();
+        Map<String, Integer> suppressed = new LinkedHashMap<>();
+        Map<String, Event> lastSuppressed = new LinkedHashMap<>();
+        Event event;
+        while ((event = queue.poll()) != null) {
+            queued.decrementAndGet();
+            if (events.size() < MAX_EVENTS_PER_FLUSH) {
+                events.add(event);
+            } else {
+                suppressed.merge(event.getType(), 1, Integer::sum);
+                lastSuppressed.put(event.getType(), event);
+            }
+        }
+        dropped.forEach((type, count) -> {
+            int droppedEvents = count.getAndSet(0);
+            if (droppedEvents > 0) {
+                suppressed.merge(type, droppedEvents, Integer::sum);
+            }
+        });
+        suppressed.forEach((type, count) -> {
+            Event last = lastSuppressed.get(type);
+            String message = count + " further events suppressed"
+                    + (last != null ? ", last: " + last.getMessage() : "");
+            events.add(new Event(message, type, last != null ? last.getTime() : DateTime.now()));
+        });
+        return events;
+    }
+}
@@ -0,0 +1,119 @@
+package mqtt.bridge.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A listener of messages from the broker, e.g. an SSE stream. Messages are
+ * buffered per listener and sent on the executor, so a slow listener never
+ * delays the callback of the broker or the other listeners. When the buffer is
+ * full messages are dropped according to the drop policy.
+ */
+@Slf4j
+public class FanoutSubscriber {
+
+    public enum DropPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+    }
+
+    public interface Sink {
+        void send(String event) throws IOException;
+
+        // called once when the subscriber is closed, e.g. after a failed send
+        void close();
+    }
+
+    @Getter
+    private final List<String> filters;
+    private final Sink sink;
+    private final Executor executor;
+    private final int bufferSize;
+    private final DropPolicy dropPolicy;
+
+    // guarded by this
+    private final ArrayDeque<String> buffer = new ArrayDeque<>();
+    private boolean draining;
+    private boolean closed;
+    // the last event offered, the same message can match several filters of a subscriber
+    private String lastEvent;
+
+    @Getter
+    private final AtomicLong dropped = new AtomicLong();
+
+    public FanoutSubscriber(List<String> filters, Sink sink, Executor executor, int bufferSize,
+            DropPolicy dropPolicy) {
+        this.filters = filters;
+        this.sink = sink;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+        this.dropPolicy = dropPolicy;
+    }
+
+    /**
+     * Buffers an encoded message and starts sending if no send is running.
+     * Never blocks.
+     */
+    public void offer(String event) {
+        synchronized (this) {
+            if (closed || event == lastEvent) {
+                return;
+            }
+            lastEvent = event;
+            if (buffer.size() >= bufferSize) {
+                dropped.incrementAndGet();
+                if (dropPolicy == DropPolicy.DROP_NEWEST) {
+                    return;
+                }
+                buffer.pollFirst();
+            }
+            buffer.addLast(event);
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            String event;
+            synchronized (this) {
+                event = buffer.pollFirst();
+                if (event == null || closed) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                sink.send(event);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Closing subscriber of {}: {}", filters, e.getMessage());
+                close();
+                return;
+            }
+        }
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffer.clear();
+        }
+        sink.close();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+}
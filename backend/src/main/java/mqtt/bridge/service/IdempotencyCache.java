@@ -0,0 +1,195 @@
+package mqtt.bridge.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Remembers the outcome of requests by their Idempotency-Key, so that a retry
+ * within the window gets the original result instead of publishing again.
+ * The keys are spread over stripes, each guarded by its own lock and bounded
+ * to its share of the capacity, both in keys and in the estimated size of the
+ * outcomes. Every stripe keeps its keys in insertion order, expired and
+ * surplus keys are evicted from the head.
+ */
+public class IdempotencyCache {
+
+    private static final int STRIPES = 64;
+    // estimated heap size of an entry without its key, fingerprint and value
+    private static final long ENTRY_SIZE = 128;
+
+    @Data
+    @AllArgsConstructor
+    public static class Result<T> {
+        private T value;
+        // true if the value was recorded by an earlier request
+        private boolean replayed;
+    }
+
+    private static class Entry {
+        final String fingerprint;
+        final long createdAt;
+        volatile boolean completed;
+        volatile Object value;
+        // estimated size, counted in the stripe once completed, guarded by the stripe
+        long size;
+
+        Entry(String fingerprint, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final long window;
+    private final int stripeCapacity;
+    private final long stripeMaxBytes;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder replayed = new LongAdder();
+
+    @SuppressWarnings("serial")
+    private static class Stripe extends LinkedHashMap<String, Entry> {
+        // estimated size of the completed entries
+        long bytes;
+    }
+
+    public IdempotencyCache(long window, int maxKeys, long maxBytes) {
+        this.window = window;
+        this.stripeCapacity = Math.max(1, maxKeys / STRIPES);
+        this.stripeMaxBytes = Math.max(1, maxBytes / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe stripe(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Runs the request unless a request with the same key was completed
+     * within the window. The fingerprint identifies the request, e.g. endpoint
+     * and topic, a key reused for a different request is rejected. A request
+     * that fails is forgotten, so it can be retried with the same key. sizeOf
+     * estimates the heap size of the outcome in bytes.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> execute(String key, String fingerprint, Callable<T> request, ToLongFunction<? super T> sizeOf)
+            throws Exception {
+        Stripe stripe = stripe(key);
+        long now = System.currentTimeMillis();
+        Entry entry;
+        boolean created = false;
+        synchronized (stripe) {
+            entry = stripe.get(key);
+            if (entry != null && entry.createdAt + window < now) {
+                stripe.remove(key);
+                stripe.bytes -= entry.size;
+                entry = null;
+            }
+            if (entry == null) {
+                evict(stripe, now, stripeCapacity - 1, null);
+                entry = new Entry(fingerprint, now);
+                stripe.put(key, entry);
+                created = true;
+            }
+        }
+        if (created) {
+            return run(stripe, key, entry, request, sizeOf);
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new IllegalStateException("Idempotency-Key " + key + " was used for a different request");
+        }
+        if (!entry.completed) {
+            throw new IllegalStateException("A request with Idempotency-Key " + key + " is in progress");
+        }
+        replayed.increment();
+        return new Result<>((T) entry.value, true);
+    }
+
+    private <T> Result<T> run(Stripe stripe, String key, Entry entry, Callable<T> request,
+            ToLongFunction<? super T> sizeOf) throws Exception {
+        T value;
+        try {
+            value = request.call();
+        } catch (Exception e) {
+            synchronized (stripe) {
+                // not completed yet, its size is not counted
+                stripe.remove(key, entry);
+            }
+            throw e;
+        }
+        entry.value = value;
+        entry.completed = true;
+        long size = ENTRY_SIZE + 2L * (key.length() + entry.fingerprint.length()) + sizeOf.applyAsLong(value);
+        synchronized (stripe) {
+            // the entry may have been evicted while the request was running
+            if (stripe.get(key) == entry) {
+                entry.size = size;
+                stripe.bytes += size;
+                evict(stripe, System.currentTimeMillis(), stripeCapacity, entry);
+            }
+        }
+        return new Result<>(value, false);
+    }
+
+    /**
+     * Removes expired entries and the eldest beyond maxSize keys or the byte
+     * share of the stripe. Stops at keep, an outcome larger than the share is
+     * still remembered. Called with the lock of the stripe held.
+     */
+    private void evict(Stripe stripe, long now, int maxSize, Entry keep) {
+        Iterator<Entry> entries = stripe.values().iterator();
+        while (entries.hasNext()) {
+            Entry eldest = entries.next();
+            if (eldest == keep || stripe.size() <= maxSize && stripe.bytes <= stripeMaxBytes
+                    && eldest.createdAt + window >= now) {
+                break;
+            }
+            entries.remove();
+            stripe.bytes -= eldest.size;
+        }
+    }
+
+    public int purge() {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                int before = stripe.size();
+                evict(stripe, now, stripeCapacity, null);
+                purged += before - stripe.size();
+            }
+        }
+        return purged;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long getBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                bytes += stripe.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    public long getReplayed() {
+        return replayed.sum();
+    }
+}
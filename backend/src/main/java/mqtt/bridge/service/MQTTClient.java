@@ -1,80 +1,305 @@
 package mqtt.bridge.service;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.security.KeyManagementException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
-import java.security.cert.X509Certificate;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.TrustManagerFactory;
+import javax.annotation.PostConstruct;
+import javax.net.SocketFactory;
 
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
-import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
-import org.joda.time.DateTime;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import mqtt.bridge.configuration.CompressionRule;
 import mqtt.bridge.configuration.ConfigurationConnection;
+import mqtt.bridge.configuration.PayloadFormatRule;
 import mqtt.bridge.configuration.ServiceConfiguration;
+import mqtt.bridge.configuration.TopicTemplateConfiguration;
+import mqtt.bridge.configuration.TransformationRule;
 import mqtt.bridge.core.C8yAgent;
+import mqtt.bridge.model.Compression;
+import mqtt.bridge.model.DeliveryStatus;
+import mqtt.bridge.model.PayloadFormat;
+import mqtt.bridge.model.PublishOptions;
+import mqtt.bridge.model.PublishRecord;
+import mqtt.bridge.model.PublishResult;
+import mqtt.bridge.model.QOS;
+import mqtt.bridge.model.RateLimitException;
+import mqtt.bridge.model.ResolveException;
 
 @Slf4j
-@Configuration
-@EnableScheduling
 @Service
+@Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 public class MQTTClient {
 
     private static final String ADDITION_TEST_DUMMY = "";
-    private static final int WAIT_PERIOD_MS = 10000;
     private static final String STATUS_MQTT_EVENT_TYPE = "mqtt_status_event";
     private static final String STATUS_SERVICE_EVENT_TYPE = "mqtt_service_event";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_TYPE = "Content-Type";
+    // with MQTT 3 the reply topic is added to the request payload
+    private static final String RESPONSE_TOPIC_FIELD = "responseTopic";
+
+    // every subscribed tenant has its own instance, see BridgeRegistry
+    @Getter
+    private final String tenant;
 
-    private ConfigurationConnection connectionConfiguration;
+    // snapshots of the cached configurations, replaced as a whole and never modified
+    private volatile ConfigurationConnection connectionConfiguration;
     private Certificate cert;
 
-    private ServiceConfiguration serviceConfiguration;
+    private volatile ServiceConfiguration serviceConfiguration;
+
+    // token buckets of the rate limits of the service configuration, replaced with it
+    private volatile RateLimiter rateLimiter;
+
+    // pool of broker connections, publishes are distributed by topic hash
+    private volatile BrokerClient[] mqttClients = new BrokerClient[0];
+
+    // number of QoS lanes the pool is divided into, each with poolSize connections
+    private volatile int lanes = 1;
+
+    private DeliveryTracker deliveryTracker;
+
+    // requests of /request/{topic} waiting for their reply
+    private final ReplyTracker replyTracker = new ReplyTracker();
+
+    // advances the timer wheel of the pending requests, not delayed by other scheduled tasks
+    private ScheduledExecutorService replyTimer;
+
+    @Value("${bridge.reply.topic-prefix:rest2mqtt/reply}")
+    private String replyTopicPrefix;
+
+    // replies are published to this topic followed by the correlation id
+    private volatile String replyTopic;
+
+    // listeners of /subscribe, indexed by their topic filters
+    private final TopicTrie<FanoutSubscriber> fanout = new TopicTrie<>();
+
+    // number of listeners per filter, guarded by itself
+    private final Map<String, Integer> fanoutFilters = new HashMap<>();
 
-    private MqttClient mqttClient;
+    // filters subscribed at the broker for the listeners, other subscriptions of the same filter are left alone
+    private final Set<String> fanoutSubscriptions = new HashSet<>();
+
+    private final Set<FanoutSubscriber> fanoutSubscribers = new HashSet<>();
+
+    @Value("${bridge.sse.buffer-size:1000}")
+    private int sseBufferSize;
+
+    @Value("${bridge.sse.drop-policy:DROP_OLDEST}")
+    private FanoutSubscriber.DropPolicy sseDropPolicy;
+
+    // outcomes of requests with an Idempotency-Key, retries within the window are not published again
+    @Getter
+    private IdempotencyCache idempotencyCache;
+
+    @Value("${bridge.idempotency.window:300000}")
+    private long idempotencyWindow;
+
+    @Value("${bridge.idempotency.max-keys:500000}")
+    private int idempotencyMaxKeys;
+
+    @Value("${bridge.idempotency.max-bytes:67108864}")
+    private long idempotencyMaxBytes;
+
+    // admission of the non-blocking ingestion per QoS lane, sized by the inflight window of the lane
+    private final PublishWindow[] publishWindows = new PublishWindow[QOS.values().length];
+
+    @Value("${bridge.ingest.max-waiting:10000}")
+    private int ingestMaxWaiting;
 
     @Autowired
     private C8yAgent c8yAgent;
 
     @Autowired
-    @Qualifier("cachedThreadPool")
+    private PayloadCompressor payloadCompressor;
+
+    @Autowired
+    private PayloadFormats payloadFormats;
+
     private ExecutorService cachedThreadPool;
 
     private Future<Boolean> connectTask;
     private Future<Boolean> initializeTask;
+    private Future<?> housekeepingTask;
+    private Future<?> eventFlushTask;
+
+    private final EventReporter eventReporter = new EventReporter();
+
+    @Value("${bridge.status.heartbeat-interval:600000}")
+    private long statusHeartbeatInterval;
+
+    private Status reportedStatus;
+
+    @Value("${bridge.virtual-threads.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    @Value("${bridge.reconnect.initial-delay:1000}")
+    private long reconnectInitialDelay;
+
+    @Value("${bridge.reconnect.max-delay:60000}")
+    private long reconnectMaxDelay;
+
+    // compiled topic templates by name, replaced with the service configuration
+    private volatile Map<String, TopicTemplate> topicTemplates = Map.of();
+
+    // compiled transformations, a changed rule is a different key
+    private final Map<TransformationRule, PayloadTransformation> transformations = new ConcurrentHashMap<>();
+
+    // topics and qos of the subscriptions, restored after a reconnect
+    private final Map<String, Integer> subscriptions = new ConcurrentHashMap<>();
+
+    // when the pool lost its connection, 0 if connected
+    private volatile long connectionLostAt;
+    private long reportedStatusAt;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SSLSocketFactoryCache sslSocketFactoryCache;
+
+    @Getter
+    private BridgeMetrics metrics;
+
+    @Value("${bridge.journal.enabled:false}")
+    private boolean journalEnabled;
+
+    @Value("${bridge.journal.directory:${java.io.tmpdir}/rest2mqtt-journal}")
+    private String journalDirectory;
+
+    @Value("${bridge.journal.segment-size:16777216}")
+    private int journalSegmentSize;
+
+    @Value("${bridge.journal.max-size:268435456}")
+    private long journalMaxSize;
+
+    @Value("${bridge.journal.eviction-policy:DROP_OLDEST}")
+    private PublishJournal.EvictionPolicy journalEvictionPolicy;
+
+    // maximum number of journaled messages replayed per second
+    @Value("${bridge.journal.replay-rate:1000}")
+    private int journalReplayRate;
+
+    // store publishes per QoS level while the broker is not available, null if disabled
+    private final PublishJournal[] journals = new PublishJournal[QOS.values().length];
+    // replayed independently, a slow QoS 2 replay doesn't hold back QoS 0
+    private final Future<?>[] replayTasks = new Future<?>[QOS.values().length];
+
+    public MQTTClient(String tenant) {
+        this.tenant = tenant;
+    }
+
+    @PostConstruct
+    private void setup() throws IOException {
+        String threadPrefix = "mqtt-" + tenant + "-";
+        if (virtualThreadsEnabled && VirtualThreads.isAvailable()) {
+            cachedThreadPool = VirtualThreads.newExecutor(threadPrefix);
+        } else {
+            cachedThreadPool = Executors.newCachedThreadPool(new CustomizableThreadFactory(threadPrefix));
+        }
+        metrics = new BridgeMetrics(meterRegistry, tenant);
+        deliveryTracker = new DeliveryTracker(metrics);
+        idempotencyCache = new IdempotencyCache(idempotencyWindow, idempotencyMaxKeys, idempotencyMaxBytes);
+        metrics.registerIdempotencyMeters(idempotencyCache);
+        for (QOS qos : QOS.values()) {
+            int lane = qos.ordinal();
+            publishWindows[lane] = new PublishWindow(() -> getInflightLimit(lane), ingestMaxWaiting);
+            metrics.registerPublishWindowMeters(publishWindows[lane], qos);
+        }
+        metrics.registerConnectionGauge(this::connectedClients);
+        metrics.registerReplyMeters(replyTracker);
+        CustomizableThreadFactory replyThreadFactory = new CustomizableThreadFactory(threadPrefix + "reply-");
+        replyThreadFactory.setDaemon(true);
+        replyTimer = Executors.newSingleThreadScheduledExecutor(replyThreadFactory);
+        replyTimer.scheduleAtFixedRate(this::expireRequests, ReplyTracker.TICK_MS, ReplyTracker.TICK_MS,
+                TimeUnit.MILLISECONDS);
+        metrics.registerFanoutGauge(this::subscriberCount);
+        subscriptions.put("$SYS/#", 0);
+        if (journalEnabled) {
+            for (QOS qos : QOS.values()) {
+                // QoS 0 keeps the directory of a single journal, its records are replayed with their own QoS
+                Path directory = qos.ordinal() == 0 ? Paths.get(journalDirectory, tenant)
+                        : Paths.get(journalDirectory, tenant + "-qos" + qos.ordinal());
+                PublishJournal journal = new PublishJournal(directory, journalSegmentSize, journalMaxSize,
+                        journalEvictionPolicy);
+                journals[qos.ordinal()] = journal;
+                metrics.registerJournalMeters(journal, qos);
+                log.info("Using journal {} for publishes with {} while the broker is not available", directory,
+                        qos);
+            }
+        }
+    }
+
+    public void shutdown() {
+        log.info("Shutting down bridge for tenant {}", tenant);
+        List<FanoutSubscriber> subscribers;
+        synchronized (fanoutFilters) {
+            subscribers = new ArrayList<>(fanoutSubscribers);
+        }
+        subscribers.forEach(this::removeSubscriber);
+        cachedThreadPool.shutdownNow();
+        replyTimer.shutdownNow();
+        disconnect();
+        closeClients();
+        for (PublishJournal journal : journals) {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+        metrics.close();
+    }
+
     @AllArgsConstructor
+    @NoArgsConstructor
     @Data
     public static class Certificate {
         private String fingerprint;
@@ -90,28 +315,38 @@ public class MQTTClient {
     }
 
     private boolean initialize() {
-        var firstRun = true;
+        Backoff backoff = new Backoff(reconnectInitialDelay, reconnectMaxDelay);
         while (!canConnect()) {
-            if (!firstRun) {
-                try {
-                    log.info("Retrieving MQTT configuration in {}s ...",
-                            WAIT_PERIOD_MS / 1000);
-                    Thread.sleep(WAIT_PERIOD_MS);
-                } catch (InterruptedException e) {
-                    log.error("Error initializing MQTT client: ", e);
-                }
+            if (!sleep(backoff.nextDelay())) {
+                return false;
             }
-            connectionConfiguration = c8yAgent.loadConnectionConfiguration();
-            if (connectionConfiguration.useSelfSignedCertificate) {
-                cert = c8yAgent.loadCertificateByName(connectionConfiguration.nameCertificate);
+            connectionConfiguration = c8yAgent.loadConnectionConfiguration(tenant);
+            if (connectionConfiguration != null && connectionConfiguration.useSelfSignedCertificate) {
+                cert = c8yAgent.loadCertificateByName(tenant, connectionConfiguration.nameCertificate);
             }
-            serviceConfiguration = c8yAgent.loadServiceConfiguration();
-            firstRun = false;
+            serviceConfiguration = c8yAgent.loadServiceConfiguration(tenant);
+            rateLimiter = new RateLimiter(serviceConfiguration.rateLimits);
+            topicTemplates = compileTemplates(serviceConfiguration);
         }
         return true;
     }
 
-    public void submitConnect() {
+    // returns false if the thread was interrupted, e.g. when the bridge is shut down
+    private boolean sleep(long delay) {
+        if (delay <= 0) {
+            return true;
+        }
+        try {
+            log.info("Retrying in {} ms ...", delay);
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public synchronized void submitConnect() {
         // test if connect task is still running, then we don't need to start another
         // task
         log.info("Called connect(): connectTask.isDone() {}",
@@ -126,86 +361,282 @@ public class MQTTClient {
         if (isConnected()) {
             disconnect();
         }
-        // stay in the loop until successful
-        boolean successful = false;
-        while (!successful) {
-            var firstRun = true;
-            while (!isConnected() && shouldConnect()) {
-                log.info("Establishing the MQTT connection now (phase II): {}, {}",
-                        ConfigurationConnection.isValid(connectionConfiguration),
-                        canConnect());
-                if (!firstRun) {
-                    try {
-                        Thread.sleep(WAIT_PERIOD_MS);
-                    } catch (InterruptedException e) {
-                        log.error("Error on reconnect: ", e);
+        Backoff backoff = new Backoff(reconnectInitialDelay, reconnectMaxDelay);
+        while (!isConnected() && shouldConnect()) {
+            if (!sleep(backoff.nextDelay())) {
+                return false;
+            }
+            log.info("Establishing the MQTT connection now (phase II): {}, {}",
+                    ConfigurationConnection.isValid(connectionConfiguration),
+                    canConnect());
+            try {
+                if (canConnect()) {
+                    SocketFactory socketFactory = createSocketFactory();
+                    int laneCount = ConfigurationConnection.getLanes(connectionConfiguration);
+                    int poolSize = laneCount * ConfigurationConnection.getPoolSize(connectionConfiguration);
+                    if (mqttClients.length != poolSize || lanes != laneCount) {
+                        closeClients();
+                        mqttClients = new BrokerClient[poolSize];
+                        lanes = laneCount;
                     }
-                }
-                try {
-                    if (canConnect()) {
-                        String prefix = connectionConfiguration.useTLS ? "ssl://" : "tcp://";
-                        String broker = prefix + connectionConfiguration.mqttHost + ":"
-                                + connectionConfiguration.mqttPort;
-                        // mqttClient = new MqttClient(broker, MqttClient.generateClientId(), new
-                        // MemoryPersistence());
-                        mqttClient = new MqttClient(broker, connectionConfiguration.getClientId() + ADDITION_TEST_DUMMY,
-                                new MemoryPersistence());
-                        MqttConnectOptions connOpts = new MqttConnectOptions();
-                        connOpts.setCleanSession(true);
-                        connOpts.setAutomaticReconnect(false);
-                        connOpts.setUserName(connectionConfiguration.getUser());
-                        connOpts.setPassword(connectionConfiguration.getPassword().toCharArray());
-                        if (connectionConfiguration.useSelfSignedCertificate) {
-                            log.debug("Using certificate: {}", cert.certInPemFormat);
-
-                            try {
-                                KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
-                                trustStore.load(null, null);
-                                trustStore.setCertificateEntry("Custom CA",
-                                        (X509Certificate) CertificateFactory.getInstance("X509")
-                                                .generateCertificate(new ByteArrayInputStream(
-                                                        cert.certInPemFormat.getBytes(Charset.defaultCharset()))));
-
-                                TrustManagerFactory tmf = TrustManagerFactory
-                                        .getInstance(TrustManagerFactory.getDefaultAlgorithm());
-                                tmf.init(trustStore);
-                                TrustManager[] trustManagers = tmf.getTrustManagers();
-
-                                SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
-                                sslContext.init(null, trustManagers, null);
-                                SSLSocketFactory sslSocketFactory = sslContext.getSocketFactory();
-
-                                // where options is the MqttConnectOptions object
-                                connOpts.setSocketFactory(sslSocketFactory);
-                            } catch (NoSuchAlgorithmException | CertificateException | IOException | KeyStoreException
-                                    | KeyManagementException e) {
-                                log.error("Exception when configuraing socketFactory for TLS!", e);
-                                throw new Exception(e);
-                            }
+                    // only (re)connect the members of the pool that are not connected
+                    for (int i = 0; i < poolSize; i++) {
+                        if (mqttClients[i] == null || !mqttClients[i].isConnected()) {
+                            connectClient(i, socketFactory);
                         }
-                        mqttClient.connect(connOpts);
-                        log.info("Successfully connected to broker {}", mqttClient.getServerURI());
-                        c8yAgent.createEvent("Successfully connected to broker " + mqttClient.getServerURI(),
-                                STATUS_MQTT_EVENT_TYPE,
-                                DateTime.now(), null);
+                    }
+                }
+            } catch (MqttException e) {
+                log.error("Error on reconnect: ", e);
+            }
+        }
+
+        if (isConnected()) {
+            long lostAt = connectionLostAt;
+            if (lostAt != 0) {
+                connectionLostAt = 0;
+                metrics.recordTimeToReconnect(System.nanoTime() - lostAt);
+            }
+            updateReplySubscription();
+            restoreSubscriptions();
+            submitReplay();
+            sendStatusService();
+        }
+        return true;
+    }
 
+    // the reply topic is derived from the client id, so bridges sharing a broker don't receive each other's replies
+    private void updateReplySubscription() {
+        String topic = replyTopicPrefix + "/" + connectionConfiguration.clientId;
+        String previous = replyTopic;
+        if (!topic.equals(previous)) {
+            if (previous != null) {
+                subscriptions.remove(previous + "/+");
+            }
+            subscriptions.put(topic + "/+", QOS.AT_LEAST_ONCE.ordinal());
+            replyTopic = topic;
+        }
+    }
+
+    // subscribes all registered topics with a single request
+    private void restoreSubscriptions() {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        String[] topics = subscriptions.keySet().toArray(new String[0]);
+        int[] qos = new int[topics.length];
+        for (int i = 0; i < topics.length; i++) {
+            qos[i] = subscriptions.getOrDefault(topics[i], 0);
+        }
+        try {
+            primaryClient().subscribe(topics, qos);
+            log.debug("Restored subscriptions on topics {}", (Object) topics);
+        } catch (MqttException e) {
+            log.error("Error on restoring subscriptions: ", e);
+        }
+    }
+
+    // null if the default socket factory is used
+    private SocketFactory createSocketFactory() throws Exception {
+        if (connectionConfiguration.useSelfSignedCertificate) {
+            log.debug("Using certificate: {}", cert.certInPemFormat);
+
+            try {
+                return sslSocketFactoryCache.get(cert);
+            } catch (GeneralSecurityException | IOException e) {
+                log.error("Exception when configuraing socketFactory for TLS!", e);
+                throw new Exception(e);
+            }
+        }
+        return null;
+    }
+
+    private void connectClient(int index, SocketFactory socketFactory) throws MqttException {
+        String prefix = connectionConfiguration.useTLS ? "ssl://" : "tcp://";
+        String broker = prefix + connectionConfiguration.mqttHost + ":"
+                + connectionConfiguration.mqttPort;
+        String clientId = ConfigurationConnection.getPoolClientId(connectionConfiguration, index) + ADDITION_TEST_DUMMY;
+        int version = ConfigurationConnection.getMqttVersion(connectionConfiguration);
+        BrokerClient client = mqttClients[index];
+        if (client != null && client.getServerURI().equals(broker) && client.getClientId().equals(clientId)
+                && client.getVersion() == version) {
+            // the broker did not change, the existing client can be reused
+            metrics.recordReconnect();
+        } else {
+            BrokerClient[] clients = mqttClients.clone();
+            if (clients[index] != null) {
+                closeClient(clients[index]);
+            }
+            client = version == ConfigurationConnection.MQTT_VERSION_5
+                    ? new Mqtt5BrokerClient(broker, clientId, connectionListener)
+                    : new Mqtt3BrokerClient(broker, clientId, connectionListener);
+            // replace the array so that publishing threads never see a partially updated pool
+            clients[index] = client;
+            mqttClients = clients;
+        }
+        Timer.Sample sample = metrics.start();
+        try {
+            client.connect(connectionConfiguration, socketFactory);
+        } catch (MqttException e) {
+            metrics.recordConnect(sample, BridgeMetrics.OUTCOME_FAILURE);
+            throw e;
+        }
+        metrics.recordConnect(sample, BridgeMetrics.OUTCOME_SUCCESS);
+        log.info("Successfully connected to broker {} with client {}, MQTT {}", client.getServerURI(),
+                client.getClientId(), version);
+        eventReporter.report("Successfully connected to broker " + client.getServerURI() + " with client "
+                + client.getClientId(), STATUS_MQTT_EVENT_TYPE);
+    }
+
+    private final BrokerClient.Listener connectionListener = new BrokerClient.Listener() {
+        @Override
+        public void connectionLost(BrokerClient client, Throwable cause) {
+            log.warn("Lost connection of client {}: {}", client.getClientId(),
+                    cause == null ? null : cause.getMessage());
+            if (connectionLostAt == 0) {
+                connectionLostAt = System.nanoTime();
+            }
+            // reconnect right away instead of waiting for the next housekeeping
+            if (shouldConnect()) {
+                submitConnect();
+            }
+        }
+
+        @Override
+        public void messageArrived(String topic, MqttMessage message) {
+            String prefix = replyTopic;
+            if (prefix != null && topic.length() > prefix.length() + 1 && topic.startsWith(prefix)
+                    && topic.charAt(prefix.length()) == '/') {
+                completeRequest(topic.substring(prefix.length() + 1), message.getPayload());
+                return;
+            }
+            // the message is encoded once for all listeners
+            String[] event = { null };
+            fanout.match(topic, subscriber -> {
+                if (event[0] == null) {
+                    event[0] = encodeEvent(topic, message.getPayload());
+                }
+                subscriber.offer(event[0]);
+            });
+        }
+    };
+
+    // JSON payloads are embedded as they are, other payloads as string
+    private String encodeEvent(String topic, byte[] payload) {
+        ObjectNode event = objectMapper.createObjectNode();
+        event.put("topic", topic);
+        try {
+            event.set("payload", objectMapper.readTree(payload));
+        } catch (IOException e) {
+            event.put("payload", new String(payload, StandardCharsets.UTF_8));
+        }
+        return event.toString();
+    }
+
+    /**
+     * Registers a listener for messages matching the filters. Every filter is
+     * subscribed once at the broker, however many listeners use it.
+     */
+    public FanoutSubscriber addSubscriber(List<String> filters, FanoutSubscriber.Sink sink) {
+        FanoutSubscriber subscriber = new FanoutSubscriber(filters, sink, cachedThreadPool, sseBufferSize,
+                sseDropPolicy);
+        int count;
+        synchronized (fanoutFilters) {
+            fanoutSubscribers.add(subscriber);
+            for (String filter : filters) {
+                fanout.add(filter, subscriber);
+                if (fanoutFilters.merge(filter, 1, Integer::sum) == 1 && !subscriptions.containsKey(filter)) {
+                    fanoutSubscriptions.add(filter);
+                    subscriptions.put(filter, QOS.AT_MOST_ONCE.ordinal());
+                    subscribeFanout(filter);
+                }
+            }
+            count = fanoutSubscribers.size();
+        }
+        log.info("Added listener for {}, {} listeners", filters, count);
+        return subscriber;
+    }
+
+    public void removeSubscriber(FanoutSubscriber subscriber) {
+        int count;
+        synchronized (fanoutFilters) {
+            if (!fanoutSubscribers.remove(subscriber)) {
+                return;
+            }
+            for (String filter : subscriber.getFilters()) {
+                fanout.remove(filter, subscriber);
+                if (fanoutFilters.merge(filter, -1, Integer::sum) == 0) {
+                    fanoutFilters.remove(filter);
+                    if (fanoutSubscriptions.remove(filter)) {
+                        subscriptions.remove(filter);
+                        unsubscribeFanout(filter);
                     }
-                } catch (MqttException e) {
-                    log.error("Error on reconnect: ", e);
                 }
-                firstRun = false;
             }
+            count = fanoutSubscribers.size();
+        }
+        subscriber.close();
+        log.info("Removed listener for {}, {} listeners", subscriber.getFilters(), count);
+    }
 
+    private int subscriberCount() {
+        synchronized (fanoutFilters) {
+            return fanoutSubscribers.size();
+        }
+    }
+
+    // while not connected the subscription is made by restoreSubscriptions
+    private void subscribeFanout(String filter) {
+        BrokerClient client = primaryClient();
+        if (client != null && client.isConnected()) {
             try {
-                subscribe("$SYS/#", 0);
+                client.subscribe(new String[] { filter }, new int[] { QOS.AT_MOST_ONCE.ordinal() });
             } catch (MqttException e) {
-                log.error("Error on reconnect, retrying ... ", e);
+                log.warn("Error subscribing to {}: {}", filter, e.getMessage());
             }
-            successful = true;
+        }
+    }
 
+    private void unsubscribeFanout(String filter) {
+        BrokerClient client = primaryClient();
+        if (client != null && client.isConnected()) {
+            try {
+                client.unsubscribe(filter);
+            } catch (MqttException e) {
+                log.warn("Error unsubscribing from {}: {}", filter, e.getMessage());
+            }
         }
+    }
 
-        return true;
+    private void completeRequest(String correlationId, byte[] payload) {
+        if (!replyTracker.complete(correlationId, payload)) {
+            log.debug("Discarded reply {}, the request timed out or is unknown", correlationId);
+        }
+    }
+
+    private void closeClients() {
+        for (BrokerClient client : mqttClients) {
+            if (client != null) {
+                closeClient(client);
+            }
+        }
+    }
+
+    // a connected client can't be closed, it is disconnected first
+    private void closeClient(BrokerClient client) {
+        try {
+            if (client.isConnected()) {
+                client.disconnect();
+                metrics.recordDisconnect();
+            }
+        } catch (MqttException e) {
+            log.warn("Error on disconnecting MQTT Client {}: {}", client.getClientId(), e.getMessage());
+        }
+        try {
+            client.close();
+        } catch (MqttException e) {
+            log.warn("Error on closing MQTT Client {}: {}", client.getClientId(), e.getMessage());
+        }
     }
 
     private boolean canConnect() {
@@ -221,32 +652,111 @@ public class MQTTClient {
     }
 
     public boolean isConnected() {
-        return mqttClient != null ? mqttClient.isConnected() : false;
+        return connectedClients() == mqttClients.length && mqttClients.length > 0;
+    }
+
+    private int connectedClients() {
+        int connected = 0;
+        for (BrokerClient client : mqttClients) {
+            if (client != null && client.isConnected()) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    private int getInflightLimit(int lane) {
+        BrokerClient[] clients = mqttClients;
+        int laneSize = clients.length / lanes;
+        if (laneSize == 0) {
+            return ConfigurationConnection.getMaxInflight(connectionConfiguration);
+        }
+        // limited by the member with the smallest window, publishes are distributed evenly
+        int limit = Integer.MAX_VALUE;
+        int offset = lane < lanes ? lane * laneSize : 0;
+        for (int i = offset; i < offset + laneSize && i < clients.length; i++) {
+            limit = Math.min(limit, clients[i] != null ? clients[i].getInflightLimit()
+                    : ConfigurationConnection.getMaxInflight(connectionConfiguration));
+        }
+        return limit * laneSize;
+    }
+
+    // without lanes all QoS levels share lane 0
+    private int lane(QOS qos) {
+        return lanes > 1 ? qos.ordinal() : 0;
+    }
+
+    /**
+     * The window of the lane used for the QoS, the connection default when
+     * null. Permits must be released to the same window.
+     */
+    public PublishWindow getPublishWindow(QOS qos) {
+        return publishWindows[lane(qos != null ? qos : defaultQos())];
+    }
+
+    private QOS defaultQos() {
+        ConfigurationConnection configuration = connectionConfiguration;
+        return configuration != null && configuration.qos != null ? configuration.qos : QOS.AT_LEAST_ONCE;
+    }
+
+    // the connection used for subscriptions
+    private BrokerClient primaryClient() {
+        return mqttClients.length > 0 ? mqttClients[0] : null;
+    }
+
+    // publishes to the same topic with the same QoS always use the same connection, this preserves their order
+    private BrokerClient clientForTopic(String topic, QOS qos) {
+        BrokerClient[] clients = mqttClients;
+        if (clients.length == 0) {
+            throw new IllegalStateException("MQTT client is not connected");
+        }
+        return clients[indexForTopic(clients, topic, qos)];
+    }
+
+    private boolean isTopicConnected(String topic, QOS qos) {
+        BrokerClient[] clients = mqttClients;
+        if (clients.length == 0) {
+            return false;
+        }
+        BrokerClient client = clients[indexForTopic(clients, topic, qos)];
+        return client != null && client.isConnected();
+    }
+
+    private int indexForTopic(BrokerClient[] clients, String topic, QOS qos) {
+        int laneSize = Math.max(1, clients.length / lanes);
+        // the modulo keeps the index valid while the pool is replaced
+        return Math.floorMod(lane(qos) * laneSize + Math.floorMod(topic.hashCode(), laneSize), clients.length);
     }
 
     public void disconnect() {
+        BrokerClient primary = primaryClient();
         log.info("Disconnecting from MQTT broker: {}",
-                (mqttClient == null ? null : mqttClient.getServerURI()));
-        try {
-            if (isConnected()) {
-                log.debug("Disconnected from MQTT broker I: {}", mqttClient.getServerURI());
-                mqttClient.unsubscribe("$SYS");
-                mqttClient.disconnect();
-                log.debug("Disconnected from MQTT broker II: {}", mqttClient.getServerURI());
+                (primary == null ? null : primary.getServerURI()));
+        for (BrokerClient client : mqttClients) {
+            try {
+                if (client != null && client.isConnected()) {
+                    log.debug("Disconnected from MQTT broker I: {}, {}", client.getServerURI(), client.getClientId());
+                    if (client == primary) {
+                        client.unsubscribe("$SYS");
+                    }
+                    client.disconnect();
+                    metrics.recordDisconnect();
+                    log.debug("Disconnected from MQTT broker II: {}, {}", client.getServerURI(), client.getClientId());
+                }
+            } catch (MqttException e) {
+                log.error("Error on disconnecting MQTT Client: ", e);
             }
-        } catch (MqttException e) {
-            log.error("Error on disconnecting MQTT Client: ", e);
         }
     }
 
     public void disconnectFromBroker() {
-        connectionConfiguration = c8yAgent.enableConnection(false);
+        connectionConfiguration = c8yAgent.enableConnection(tenant, false);
         disconnect();
         sendStatusService();
     }
 
     public void connectToBroker() {
-        connectionConfiguration = c8yAgent.enableConnection(true);
+        connectionConfiguration = c8yAgent.enableConnection(tenant, true);
         submitConnect();
         sendStatusService();
     }
@@ -254,27 +764,52 @@ public class MQTTClient {
     public void subscribe(String topic, Integer qos) throws MqttException {
 
         log.debug("Subscribing on topic {}", topic);
-        c8yAgent.createEvent("Subscribing on topic " + topic, STATUS_MQTT_EVENT_TYPE, DateTime.now(), null);
+        // remembered, so that the subscription is restored after a reconnect
+        subscriptions.put(topic, qos != null ? qos : QOS.AT_LEAST_ONCE.ordinal());
+        eventReporter.report("Subscribing on topic " + topic, STATUS_MQTT_EVENT_TYPE);
         if (qos != null)
-            mqttClient.subscribe(topic, qos);
+            primaryClient().subscribe(new String[] { topic }, new int[] { qos });
         else
-            mqttClient.subscribe(topic);
+            primaryClient().subscribe(new String[] { topic }, new int[] { QOS.AT_LEAST_ONCE.ordinal() });
         log.debug("Successfully subscribed on topic {}", topic);
 
     }
 
     private void unsubscribe(String topic) throws MqttException {
         log.info("Unsubscribing from topic {}", topic);
-        c8yAgent.createEvent("Unsubscribing on topic " + topic, STATUS_MQTT_EVENT_TYPE, DateTime.now(), null);
-        mqttClient.unsubscribe(topic);
+        eventReporter.report("Unsubscribing on topic " + topic, STATUS_MQTT_EVENT_TYPE);
+        subscriptions.remove(topic);
+        primaryClient().unsubscribe(topic);
+    }
+
+    // null if the service configuration has no valid template with this name
+    public TopicTemplate getTopicTemplate(String name) {
+        return topicTemplates.get(name);
+    }
+
+    // invalid templates are skipped, a configuration stored by an older version may contain them
+    private static Map<String, TopicTemplate> compileTemplates(ServiceConfiguration configuration) {
+        Map<String, TopicTemplate> templates = new HashMap<>();
+        for (TopicTemplateConfiguration template : configuration.topicTemplates) {
+            if (template == null || template.name == null || template.template == null) {
+                log.warn("Ignoring topic template without name or template");
+                continue;
+            }
+            try {
+                templates.put(template.name, TopicTemplate.compile(template.template, template.topicFilter));
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring topic template {}: {}", template.name, e.getMessage());
+            }
+        }
+        return templates;
     }
 
     public ConfigurationConnection loadConnectionConfiguration() {
-        return c8yAgent.loadConnectionConfiguration();
+        return c8yAgent.loadConnectionConfiguration(tenant);
     }
 
     public void saveConnectionConfiguration(ConfigurationConnection configuration) {
-        c8yAgent.saveConnectionConfiguration(configuration);
+        c8yAgent.saveConnectionConfiguration(tenant, configuration);
         disconnect();
         // invalidate broker client
         connectionConfiguration = null;
@@ -283,33 +818,77 @@ public class MQTTClient {
     }
 
     public ServiceConfiguration loadServiceConfiguration() {
-        return c8yAgent.loadServiceConfiguration();
+        return c8yAgent.loadServiceConfiguration(tenant);
     }
 
     public void saveServiceConfiguration(ServiceConfiguration configuration) {
         serviceConfiguration = configuration;
-        c8yAgent.saveServiceConfiguration(configuration);
+        // the buckets start full again, limits take effect immediately
+        rateLimiter = new RateLimiter(configuration.rateLimits);
+        topicTemplates = compileTemplates(configuration);
+        transformations.clear();
+        c8yAgent.saveServiceConfiguration(tenant, configuration);
+    }
+
+    public void submitHousekeeping() {
+        if (housekeepingTask == null || housekeepingTask.isDone()) {
+            housekeepingTask = cachedThreadPool.submit(() -> runHouskeeping());
+        }
     }
 
-    @Scheduled(fixedRate = 30000)
     public void runHouskeeping() {
         try {
             String statusConnectTask = (connectTask == null ? "stopped"
                     : connectTask.isDone() ? "stopped" : "running");
             String statusInitializeTask = (initializeTask == null ? "stopped"
                     : initializeTask.isDone() ? "stopped" : "running");
-            log.info("Status: connectTask {}, initializeTask {}, isConnected {}", statusConnectTask,
-                    statusInitializeTask, isConnected());
+            log.info("Status: connectTask {}, initializeTask {}, isConnected {}, connectedClients {}/{}",
+                    statusConnectTask, statusInitializeTask, isConnected(), connectedClients(), mqttClients.length);
+            // reconnect members of the pool that lost their connection
+            if (mqttClients.length > 0 && !isConnected() && canConnect()) {
+                submitConnect();
+            }
+            submitReplay();
             sendStatusService();
         } catch (Exception ex) {
             log.error("Error during house keeping execution: {}", ex);
         }
     }
 
+    // the status is only sent when it changed or the heartbeat interval elapsed
     private void sendStatusService() {
         ServiceStatus statusService;
         statusService = getServiceStatus();
-        c8yAgent.sendStatusService(STATUS_SERVICE_EVENT_TYPE, statusService);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (reportedStatus == statusService.getStatus() && now - reportedStatusAt < statusHeartbeatInterval) {
+                return;
+            }
+            reportedStatus = statusService.getStatus();
+            reportedStatusAt = now;
+        }
+        try {
+            c8yAgent.sendStatusService(tenant, STATUS_SERVICE_EVENT_TYPE, statusService);
+        } catch (RuntimeException e) {
+            // try again with the next housekeeping
+            synchronized (this) {
+                reportedStatus = null;
+            }
+            throw e;
+        }
+    }
+
+    public void submitEventFlush() {
+        if (eventFlushTask == null || eventFlushTask.isDone()) {
+            eventFlushTask = cachedThreadPool.submit(() -> flushEvents());
+        }
+    }
+
+    private void flushEvents() {
+        List<EventReporter.Event> events = eventReporter.drain();
+        if (!events.isEmpty()) {
+            c8yAgent.createEvents(tenant, events);
+        }
     }
 
     public ServiceStatus getServiceStatus() {
@@ -323,23 +902,575 @@ public class MQTTClient {
         } else {
             serviceStatus = ServiceStatus.notReady();
         }
+        serviceStatus.setConnectedClients(connectedClients());
+        serviceStatus.setPoolSize(mqttClients.length);
         return serviceStatus;
     }
 
-    public Long forwardPayload(String topic, Map<String, Object> payload)
-            throws MqttPersistenceException, MqttException, JsonProcessingException {
+    public Long forwardPayload(String topic, Map<String, Object> payload, PublishOptions options)
+            throws MqttPersistenceException, MqttException, IOException {
         if (serviceConfiguration.logPayload) {
             log.info("Forward payload {} to topic {}", payload, topic);
         }
+        PayloadFormat format = resolveFormat(topic, options);
+        byte[] pb = payloadFormats.write(payload, format, resolveTransformation(topic));
+        return publish(topic, pb, resolveQos(null, options), resolveRetain(null, options),
+                withContentType(options.getUserProperties(), format));
+    }
+
+    public Long forwardPayload(String topic, byte[] payload, PublishOptions options)
+            throws MqttPersistenceException, MqttException, IOException {
+        checkRateLimit(topic, options.getClient());
+        if (!serviceConfiguration.passthroughPayload) {
+            Map<String, Object> map = objectMapper.readValue(payload, new TypeReference<Map<String, Object>>() {
+            });
+            return forwardPayload(topic, map, options);
+        }
+        PayloadFormat format = resolveFormat(topic, options);
+        byte[] pb = payloadFormats.transcode(preparePassthroughPayload(topic, payload), format,
+                resolveTransformation(topic));
+        return publish(topic, pb, resolveQos(null, options), resolveRetain(null, options),
+                withContentType(options.getUserProperties(), format));
+    }
+
+    /**
+     * Forwards a payload the client already compressed, it is neither
+     * validated nor compressed again.
+     */
+    public Long forwardEncodedPayload(String topic, byte[] payload, Compression compression,
+            PublishOptions options) throws MqttPersistenceException, MqttException {
+        checkRateLimit(topic, options.getClient());
+        if (serviceConfiguration.logPayload) {
+            log.info("Forward {} payload of {} bytes to topic {}", compression.encoding, payload.length, topic);
+        }
+        return publish(topic, payload, compression.encoding, resolveQos(null, options), resolveRetain(null, options),
+                options.getUserProperties());
+    }
+
+    /**
+     * Publishes without blocking the calling thread. The returned future
+     * completes when the broker acknowledged the message or it was journaled.
+     * Callers are expected to hold a permit of the publish window.
+     */
+    public CompletableFuture<Void> forwardPayloadAsync(String topic, byte[] payload, PublishOptions options) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        try {
+            byte[] pb;
+            PayloadFormat format = resolveFormat(topic, options);
+            if (serviceConfiguration.passthroughPayload) {
+                pb = payloadFormats.transcode(preparePassthroughPayload(topic, payload), format,
+                resolveTransformation(topic));
+            } else {
+                Map<String, Object> map = objectMapper.readValue(payload, new TypeReference<Map<String, Object>>() {
+                });
+                if (serviceConfiguration.logPayload) {
+                    log.info("Forward payload {} to topic {}", map, topic);
+                }
+                pb = payloadFormats.write(map, format, resolveTransformation(topic));
+            }
+            publishAsync(topic, pb, resolveQos(null, options), resolveRetain(null, options),
+                    withContentType(options.getUserProperties(), format), completion);
+        } catch (Exception e) {
+            completion.completeExceptionally(e);
+        }
+        return completion;
+    }
+
+    // non-blocking variant of forwardRecord, used by the streaming ingestion
+    public CompletableFuture<Void> forwardRecordAsync(PublishRecord record) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        String topic = record.getTopic();
+        try {
+            if (topic == null || record.getPayload() == null) {
+                throw new IllegalArgumentException("Record requires a topic and a payload");
+            }
+            if (serviceConfiguration.logPayload) {
+                log.info("Forward payload {} to topic {}", record.getPayload(), topic);
+            }
+            PayloadFormat format = resolveFormat(topic, PublishOptions.DEFAULT);
+            byte[] pb = payloadFormats.write(record.getPayload(), format,
+                    resolveTransformation(topic));
+            publishAsync(topic, pb, resolveQos(record.getQos(), PublishOptions.DEFAULT),
+                    resolveRetain(record.getRetain(), PublishOptions.DEFAULT), withContentType(null, format), completion);
+        } catch (Exception e) {
+            completion.completeExceptionally(e);
+        }
+        return completion;
+    }
+
+    private byte[] preparePassthroughPayload(String topic, byte[] payload) throws IOException {
+        if (serviceConfiguration.validatePayload) {
+            validatePayload(payload);
+        }
+        if (serviceConfiguration.logPayload) {
+            log.info("Forward payload {} to topic {}", new String(payload, StandardCharsets.UTF_8), topic);
+        }
+        return payload;
+    }
+
+    private void validatePayload(byte[] payload) throws IOException {
+        // walk the token stream once, this detects malformed JSON without building a tree
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() == null) {
+                throw new JsonParseException(parser, "Empty payload");
+            }
+            parser.skipChildren();
+            if (parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after JSON value");
+            }
+        }
+    }
+
+    public List<PublishResult> forwardBatch(InputStream input, PublishOptions options)
+            throws IOException {
+        return forwardRecords(input, PublishRecord.class,
+                (index, record) -> forwardRecord(index, record, options));
+    }
+
+    /**
+     * Publishes every payload of the input to the topic the template resolves
+     * for it.
+     */
+    public List<PublishResult> forwardTemplate(TopicTemplate template, InputStream input, PublishOptions options)
+            throws IOException {
+        return forwardRecords(input, JsonNode.class, (index, payload) -> {
+            try {
+                String topic = template.resolve(payload);
+                return forwardRecord(index, new PublishRecord(topic, payload, null, null), options);
+            } catch (ResolveException e) {
+                return PublishResult.failure(index, null, e.getMessage());
+            }
+        });
+    }
+
+    private <T> List<PublishResult> forwardRecords(InputStream input, Class<T> type,
+            BiFunction<Integer, T, PublishResult> forward) throws IOException {
+        if (!isConnected() && !journalEnabled) {
+            throw new IllegalStateException("MQTT client is not connected");
+        }
+        List<PublishResult> results = new ArrayList<>();
+        int index = 0;
+        // a MappingIterator accepts both a JSON array and a stream of white space separated values (NDJSON)
+        try (MappingIterator<T> records = objectMapper.readerFor(type).readValues(input)) {
+            while (true) {
+                T record;
+                try {
+                    if (!records.hasNextValue()) {
+                        break;
+                    }
+                    record = records.nextValue();
+                } catch (JsonProcessingException e) {
+                    // the stream cannot be resynchronized after a syntax error, report and stop here
+                    results.add(PublishResult.failure(index, null, e.getOriginalMessage()));
+                    break;
+                }
+                results.add(forward.apply(index++, record));
+            }
+        }
+        return results;
+    }
+
+    private PublishResult forwardRecord(int index, PublishRecord record, PublishOptions options) {
+        String topic = record.getTopic();
+        if (topic == null || record.getPayload() == null) {
+            return PublishResult.failure(index, topic, "Record requires a topic and a payload");
+        }
+        try {
+            checkRateLimit(topic, options.getClient());
+            if (serviceConfiguration.logPayload) {
+                log.info("Forward payload {} to topic {}", record.getPayload(), topic);
+            }
+            PayloadFormat format = resolveFormat(topic, options);
+            byte[] pb = payloadFormats.write(record.getPayload(), format,
+                    resolveTransformation(topic));
+            Long deliveryId = publish(topic, pb, resolveQos(record.getQos(), options),
+                    resolveRetain(record.getRetain(), options), withContentType(options.getUserProperties(), format));
+            return PublishResult.success(index, topic, deliveryId);
+        } catch (Exception e) {
+            log.warn("Error forwarding record {} to topic {}: {}", index, topic, e.getMessage());
+            return PublishResult.failure(index, topic, e.getLocalizedMessage());
+        }
+    }
+
+    // the user properties are only built and sent with MQTT 5, they are not journaled
+    private Long publish(String topic, byte[] payload, QOS qos, boolean retain,
+            Supplier<Map<String, String>> userProperties)
+            throws MqttPersistenceException, MqttException {
+        return publish(topic, payload, null, qos, retain, userProperties);
+    }
+
+    // a payload with a content encoding is already compressed by the client
+    private Long publish(String topic, byte[] payload, String contentEncoding, QOS qos, boolean retain,
+            Supplier<Map<String, String>> userProperties) throws MqttPersistenceException, MqttException {
         Long result = null;
-        byte[] pb = objectMapper.writeValueAsBytes(payload);
         MqttMessage msg = new MqttMessage();
-        msg.setPayload(pb);
-        msg.setQos(connectionConfiguration.qos.ordinal());
-        mqttClient.publish(topic, msg);
+        msg.setPayload(payload);
+        msg.setQos(qos.ordinal());
+        msg.setRetained(retain);
+        // once connected new publishes are sent right away, journaled ones are replayed alongside
+        PublishJournal journal = journals[qos.ordinal()];
+        if (journal != null && !isTopicConnected(topic, qos)) {
+            appendToJournal(journal, topic, msg, contentEncoding);
+            metrics.recordPayloadSize(payload.length);
+            return result;
+        }
+        BrokerClient client = clientForTopic(topic, qos);
+        userProperties = compress(client, topic, msg, contentEncoding, userProperties);
+        metrics.recordPayloadSize(msg.getPayload().length);
+        boolean async = serviceConfiguration.asyncPublish;
+        Timer.Sample sample = metrics.start();
+        try {
+            if (async) {
+                // answer immediately, the outcome is reported through the delivery id
+                long id = deliveryTracker.register();
+                try {
+                    deliveryTracker.track(id, client.publish(topic, msg, userProperties(client, userProperties)));
+                } catch (MqttException e) {
+                    deliveryTracker.remove(id);
+                    throw e;
+                }
+                result = id;
+            } else {
+                BrokerClient.await(client.publish(topic, msg, userProperties(client, userProperties)));
+            }
+        } catch (MqttException e) {
+            metrics.recordPublish(sample, async ? "async" : "sync", BridgeMetrics.OUTCOME_FAILURE);
+            if (journal != null && isConnectionError(e)) {
+                appendToJournal(journal, topic, uncompressed(msg, payload), contentEncoding);
+                return null;
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            metrics.recordPublish(sample, async ? "async" : "sync", BridgeMetrics.OUTCOME_FAILURE);
+            throw e;
+        }
+        metrics.recordPublish(sample, async ? "async" : "sync", BridgeMetrics.OUTCOME_SUCCESS);
         return result;
     }
 
+    private void publishAsync(String topic, byte[] payload, QOS qos, boolean retain,
+            Supplier<Map<String, String>> userProperties, CompletableFuture<Void> completion)
+            throws MqttPersistenceException, MqttException {
+        MqttMessage msg = new MqttMessage();
+        msg.setPayload(payload);
+        msg.setQos(qos.ordinal());
+        msg.setRetained(retain);
+        PublishJournal journal = journals[qos.ordinal()];
+        if (journal != null && !isTopicConnected(topic, qos)) {
+            appendToJournal(journal, topic, msg, null);
+            metrics.recordPayloadSize(payload.length);
+            completion.complete(null);
+            return;
+        }
+        BrokerClient client = clientForTopic(topic, qos);
+        userProperties = compress(client, topic, msg, null, userProperties);
+        metrics.recordPayloadSize(msg.getPayload().length);
+        Timer.Sample sample = metrics.start();
+        try {
+            client.publish(topic, msg, userProperties(client, userProperties)).whenComplete((result, exception) -> {
+                if (exception == null) {
+                    metrics.recordPublish(sample, "ingest", BridgeMetrics.OUTCOME_SUCCESS);
+                    completion.complete(null);
+                } else {
+                    metrics.recordPublish(sample, "ingest", BridgeMetrics.OUTCOME_FAILURE);
+                    completion.completeExceptionally(exception);
+                }
+            });
+        } catch (MqttException e) {
+            metrics.recordPublish(sample, "ingest", BridgeMetrics.OUTCOME_FAILURE);
+            if (journal != null && isConnectionError(e)) {
+                appendToJournal(journal, topic, uncompressed(msg, payload), null);
+                completion.complete(null);
+                return;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Compresses the payload of the message by the first matching rule if it
+     * gets smaller. Only MQTT 5 subscribers learn the encoding, from the user
+     * properties, so nothing is compressed for MQTT 3 connections and payloads
+     * the client compressed are rejected.
+     */
+    private Supplier<Map<String, String>> compress(BrokerClient client, String topic, MqttMessage msg,
+            String contentEncoding, Supplier<Map<String, String>> userProperties) {
+        boolean mqtt5 = client.getVersion() == ConfigurationConnection.MQTT_VERSION_5;
+        if (contentEncoding != null) {
+            if (!mqtt5) {
+                throw new IllegalStateException("Compressed payloads require an MQTT 5 connection");
+            }
+            return withProperty(userProperties, CONTENT_ENCODING, contentEncoding);
+        }
+        if (!mqtt5) {
+            return userProperties;
+        }
+        byte[] payload = msg.getPayload();
+        CompressionRule rule = findCompressionRule(topic, payload.length);
+        if (rule == null) {
+            return userProperties;
+        }
+        byte[] compressed = payloadCompressor.compress(payload, rule.compression);
+        if (compressed.length >= payload.length) {
+            return userProperties;
+        }
+        msg.setPayload(compressed);
+        return withProperty(userProperties, CONTENT_ENCODING, rule.compression.encoding);
+    }
+
+    // the message as it was before compression, the journal keeps no content encoding
+    private static MqttMessage uncompressed(MqttMessage msg, byte[] payload) {
+        if (msg.getPayload() == payload) {
+            return msg;
+        }
+        MqttMessage original = new MqttMessage(payload);
+        original.setQos(msg.getQos());
+        original.setRetained(msg.isRetained());
+        return original;
+    }
+
+    private CompressionRule findCompressionRule(String topic, int size) {
+        for (CompressionRule rule : serviceConfiguration.compressionRules) {
+            if (TopicFilters.matches(rule.topicFilter, topic)) {
+                return size >= rule.minSize ? rule : null;
+            }
+        }
+        return null;
+    }
+
+    // the QoS of a record wins over the QoS of the request, which wins over the QoS of the connection
+    private QOS resolveQos(QOS recordQos, PublishOptions options) {
+        if (recordQos != null) {
+            return recordQos;
+        }
+        return options.getQos() != null ? options.getQos() : defaultQos();
+    }
+
+    private static boolean resolveRetain(Boolean recordRetain, PublishOptions options) {
+        if (recordRetain != null) {
+            return recordRetain;
+        }
+        return Boolean.TRUE.equals(options.getRetain());
+    }
+
+    // the format requested by the client wins over the format configured for the topic
+    private PayloadFormat resolveFormat(String topic, PublishOptions options) {
+        if (options.getFormat() != null) {
+            return options.getFormat();
+        }
+        for (PayloadFormatRule rule : serviceConfiguration.payloadFormatRules) {
+            if (TopicFilters.matches(rule.topicFilter, topic)) {
+                return rule.format;
+            }
+        }
+        return PayloadFormat.JSON;
+    }
+
+    /**
+     * Takes a token from every rate limit matching the topic and the client.
+     * Throws RateLimitException if one of them is exhausted.
+     */
+    public void checkRateLimit(String topic, String client) {
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            return;
+        }
+        long wait = limiter.acquire(topic, client);
+        if (wait > 0) {
+            metrics.recordRateLimited();
+            throw new RateLimitException(topic, wait);
+        }
+    }
+
+    // null if no transformation rule matches the topic
+    private PayloadTransformation resolveTransformation(String topic) {
+        for (TransformationRule rule : serviceConfiguration.transformationRules) {
+            if (TopicFilters.matches(rule.topicFilter, topic)) {
+                return transformations.computeIfAbsent(rule, PayloadTransformation::compile);
+            }
+        }
+        return null;
+    }
+
+    private static Supplier<Map<String, String>> withContentType(Supplier<Map<String, String>> userProperties,
+            PayloadFormat format) {
+        return format == PayloadFormat.JSON ? userProperties
+                : withProperty(userProperties, CONTENT_TYPE, format.contentType);
+    }
+
+    // with MQTT 5 subscribers learn the content type and encoding from the user properties
+    private static Supplier<Map<String, String>> withProperty(Supplier<Map<String, String>> userProperties,
+            String key, String value) {
+        if (value == null) {
+            return userProperties;
+        }
+        return () -> {
+            Map<String, String> properties = userProperties == null ? new HashMap<>()
+                    : new HashMap<>(userProperties.get());
+            properties.put(key, value);
+            return properties;
+        };
+    }
+
+    // MQTT 3 has no user properties, they are not even built for it
+    private static Map<String, String> userProperties(BrokerClient client,
+            Supplier<Map<String, String>> userProperties) {
+        return userProperties == null || client.getVersion() != ConfigurationConnection.MQTT_VERSION_5 ? null
+                : userProperties.get();
+    }
+
+    // the publish may succeed once the connection is back
+    private static boolean isConnectionError(MqttException e) {
+        switch (e.getReasonCode()) {
+        case MqttException.REASON_CODE_CLIENT_NOT_CONNECTED:
+        case MqttException.REASON_CODE_CONNECTION_LOST:
+        case MqttException.REASON_CODE_CLIENT_DISCONNECTING:
+        case MqttException.REASON_CODE_CLIENT_CLOSED:
+        case MqttException.REASON_CODE_CLIENT_TIMEOUT:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static void appendToJournal(PublishJournal journal, String topic, MqttMessage msg, String contentEncoding)
+            throws MqttException {
+        if (contentEncoding != null) {
+            // the journal keeps no user properties, subscribers could not decode the payload after the replay
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
+        }
+        // a topic the broker would never accept must not block the replay
+        MqttTopic.validate(topic, false);
+        try {
+            if (!journal.append(topic, msg.getPayload(), msg.getQos(), msg.isRetained())) {
+                throw new IllegalStateException("Broker is not available and the journal is full");
+            }
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+    }
+
+    private void submitReplay() {
+        for (int i = 0; i < journals.length; i++) {
+            PublishJournal journal = journals[i];
+            if (journal != null && journal.getPending() > 0 && isConnected()
+                    && (replayTasks[i] == null || replayTasks[i].isDone())) {
+                replayTasks[i] = cachedThreadPool.submit(() -> replayJournal(journal));
+            }
+        }
+    }
+
+    private void replayJournal(PublishJournal journal) {
+        log.info("Replaying {} journaled messages", journal.getPending());
+        long interval = TimeUnit.SECONDS.toNanos(1) / Math.max(journalReplayRate, 1);
+        long next = System.nanoTime();
+        PublishJournal.Entry entry;
+        while (isConnected() && (entry = journal.peek()) != null) {
+            try {
+                MqttMessage msg = new MqttMessage(entry.getPayload());
+                msg.setQos(entry.getQos());
+                msg.setRetained(entry.isRetained());
+                BrokerClient.await(clientForTopic(entry.getTopic(), QOS.values()[entry.getQos()])
+                        .publish(entry.getTopic(), msg, null));
+                journal.acknowledge(entry);
+            } catch (MqttException | RuntimeException e) {
+                if (!isConnected() || Thread.currentThread().isInterrupted()
+                        || (e instanceof MqttException && isConnectionError((MqttException) e))) {
+                    log.warn("Replay of journal interrupted, {} messages pending: {}", journal.getPending(),
+                            e.getMessage());
+                    return;
+                }
+                // rejected for another reason, e.g. not authorized, retrying would block the journal forever
+                if (journal.discard(entry)) {
+                    log.warn("Discarded journaled message to topic {}: {}", entry.getTopic(), e.getMessage());
+                }
+            }
+            // throttle the replay, so the broker is not flooded after an outage
+            next += interval;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+        log.info("Replay of journal finished, {} messages pending", journal.getPending());
+    }
+
+    /**
+     * Publishes a request and completes with the payload of the reply, or with
+     * a TimeoutException. The reply is expected on the reply topic followed by
+     * the correlation id. With MQTT 5 this topic is sent as response topic and
+     * the id as correlation data, with MQTT 3 the payload gets a field
+     * responseTopic.
+     */
+    public CompletableFuture<byte[]> request(String topic, byte[] payload, long timeout, PublishOptions options)
+            throws MqttException, IOException {
+        checkRateLimit(topic, options.getClient());
+        QOS qos = resolveQos(null, options);
+        String prefix = replyTopic;
+        if (prefix == null || !isTopicConnected(topic, qos)) {
+            throw new MqttException(MqttException.REASON_CODE_CLIENT_NOT_CONNECTED);
+        }
+        BrokerClient client = clientForTopic(topic, qos);
+        Map<String, Object> map = objectMapper.readValue(payload, new TypeReference<Map<String, Object>>() {
+        });
+        ReplyTracker.Pending request = replyTracker.register(timeout);
+        String responseTopic = prefix + "/" + request.getId();
+        if (client.getVersion() != ConfigurationConnection.MQTT_VERSION_5) {
+            map.put(RESPONSE_TOPIC_FIELD, responseTopic);
+        }
+        if (serviceConfiguration.logPayload) {
+            log.info("Request {} to topic {}, reply expected on {}", map, topic, responseTopic);
+        }
+        Timer.Sample sample = metrics.start();
+        try {
+            PayloadFormat format = resolveFormat(topic, options);
+            MqttMessage msg = new MqttMessage(payloadFormats.write(map, format, resolveTransformation(topic)));
+            msg.setQos(qos.ordinal());
+            client.publish(topic, msg, userProperties(client, withContentType(options.getUserProperties(), format)),
+                    responseTopic,
+                    request.getId().getBytes(StandardCharsets.UTF_8))
+                    .whenComplete((result, exception) -> {
+                        metrics.recordPublish(sample, "request",
+                                exception == null ? BridgeMetrics.OUTCOME_SUCCESS : BridgeMetrics.OUTCOME_FAILURE);
+                        if (exception != null) {
+                            replyTracker.fail(request.getId(), exception);
+                        }
+                    });
+        } catch (MqttException | IOException | RuntimeException e) {
+            metrics.recordPublish(sample, "request", BridgeMetrics.OUTCOME_FAILURE);
+            replyTracker.fail(request.getId(), e);
+            throw e;
+        }
+        return request.getReply();
+    }
+
+    // advances the timer wheel of the pending requests, called every ReplyTracker.TICK_MS
+    private void expireRequests() {
+        int expired = replyTracker.advance(System.currentTimeMillis());
+        if (expired > 0) {
+            log.debug("{} requests timed out waiting for a reply", expired);
+        }
+    }
+
+    public DeliveryStatus getDeliveryStatus(long id) {
+        return deliveryTracker.getStatus(id);
+    }
+
+    public void purgeDeliveries() {
+        int purged = deliveryTracker.purge();
+        if (purged > 0) {
+            log.debug("Purged {} completed deliveries", purged);
+        }
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.purge();
+        }
+        purged = idempotencyCache.purge();
+        if (purged > 0) {
+            log.debug("Purged {} idempotency keys", purged);
+        }
+    }
+
     public void runOperation(ServiceOperation operation) {
         if (operation.getOperation().equals(Operation.CONNECT)) {
             connectToBroker();
@@ -0,0 +1,122 @@
+package mqtt.bridge.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.net.SocketFactory;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+
+import mqtt.bridge.configuration.ConfigurationConnection;
+
+public class Mqtt3BrokerClient implements BrokerClient {
+
+    private final MqttAsyncClient client;
+    // written on connect, read by publishing threads
+    private volatile int maxInflight = ConfigurationConnection.DEFAULT_MAX_INFLIGHT;
+
+    public Mqtt3BrokerClient(String serverURI, String clientId, Listener listener) throws MqttException {
+        client = new MqttAsyncClient(serverURI, clientId, new MemoryPersistence());
+        client.setCallback(new MqttCallback() {
+            @Override
+            public void connectionLost(Throwable cause) {
+                listener.connectionLost(Mqtt3BrokerClient.this, cause);
+            }
+
+            @Override
+            public void messageArrived(String topic, MqttMessage message) {
+                listener.messageArrived(topic, message);
+            }
+
+            @Override
+            public void deliveryComplete(IMqttDeliveryToken token) {
+            }
+        });
+    }
+
+    @Override
+    public String getServerURI() {
+        return client.getServerURI();
+    }
+
+    @Override
+    public String getClientId() {
+        return client.getClientId();
+    }
+
+    @Override
+    public int getVersion() {
+        return ConfigurationConnection.MQTT_VERSION_3;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public void connect(ConfigurationConnection configuration, SocketFactory socketFactory) throws MqttException {
+        MqttConnectOptions connOpts = new MqttConnectOptions();
+        connOpts.setCleanSession(true);
+        connOpts.setAutomaticReconnect(false);
+        maxInflight = ConfigurationConnection.getMaxInflight(configuration);
+        connOpts.setMaxInflight(maxInflight);
+        connOpts.setUserName(configuration.getUser());
+        connOpts.setPassword(configuration.getPassword().toCharArray());
+        if (socketFactory != null) {
+            connOpts.setSocketFactory(socketFactory);
+        }
+        client.connect(connOpts).waitForCompletion();
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String topic, MqttMessage message, Map<String, String> userProperties)
+            throws MqttException {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        client.publish(topic, message, null, new IMqttActionListener() {
+            @Override
+            public void onSuccess(IMqttToken asyncActionToken) {
+                completion.complete(null);
+            }
+
+            @Override
+            public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                completion.completeExceptionally(exception);
+            }
+        });
+        return completion;
+    }
+
+    @Override
+    public void subscribe(String[] topics, int[] qos) throws MqttException {
+        client.subscribe(topics, qos).waitForCompletion();
+    }
+
+    @Override
+    public void unsubscribe(String topic) throws MqttException {
+        client.unsubscribe(topic).waitForCompletion();
+    }
+
+    @Override
+    public void disconnect() throws MqttException {
+        client.disconnect().waitForCompletion();
+    }
+
+    @Override
+    public void close() throws MqttException {
+        client.close();
+    }
+
+    @Override
+    public int getInflightLimit() {
+        return maxInflight;
+    }
+}
@@ -0,0 +1,228 @@
+package mqtt.bridge.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.net.SocketFactory;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+import lombok.extern.slf4j.Slf4j;
+import mqtt.bridge.configuration.ConfigurationConnection;
+
+/**
+ * Connection using MQTT 5. Paho assigns topic aliases to outgoing publishes up
+ * to the Topic Alias Maximum announced by the broker, so repeated topics are
+ * not sent again. The inflight window is limited by the Receive Maximum of
+ * the broker.
+ */
+@Slf4j
+public class Mqtt5BrokerClient implements BrokerClient {
+
+    private final MqttAsyncClient client;
+    // written on connect, read by publishing threads
+    private volatile int maxInflight = ConfigurationConnection.DEFAULT_MAX_INFLIGHT;
+    private volatile Long messageExpiryInterval;
+
+    public Mqtt5BrokerClient(String serverURI, String clientId, Listener listener) throws MqttException {
+        try {
+            client = new MqttAsyncClient(serverURI, clientId, new MemoryPersistence());
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw translate(e);
+        }
+        client.setCallback(new MqttCallback() {
+            @Override
+            public void disconnected(MqttDisconnectResponse disconnectResponse) {
+                listener.connectionLost(Mqtt5BrokerClient.this, disconnectResponse.getException());
+            }
+
+            @Override
+            public void mqttErrorOccurred(org.eclipse.paho.mqttv5.common.MqttException exception) {
+                log.warn("Error on MQTT 5 client {}: {}", clientId, exception.getMessage());
+            }
+
+            @Override
+            public void messageArrived(String topic, org.eclipse.paho.mqttv5.common.MqttMessage message) {
+                MqttMessage msg = new MqttMessage(message.getPayload());
+                msg.setQos(message.getQos());
+                msg.setRetained(message.isRetained());
+                listener.messageArrived(topic, msg);
+            }
+
+            @Override
+            public void deliveryComplete(IMqttToken token) {
+            }
+
+            @Override
+            public void connectComplete(boolean reconnect, String serverURI) {
+            }
+
+            @Override
+            public void authPacketArrived(int reasonCode, MqttProperties properties) {
+            }
+        });
+    }
+
+    // the reason codes of both versions are the same
+    private static MqttException translate(org.eclipse.paho.mqttv5.common.MqttException e) {
+        return new MqttException(e.getReasonCode(), e);
+    }
+
+    private static Throwable translate(Throwable t) {
+        return t instanceof org.eclipse.paho.mqttv5.common.MqttException
+                ? translate((org.eclipse.paho.mqttv5.common.MqttException) t)
+                : t;
+    }
+
+    @Override
+    public String getServerURI() {
+        return client.getServerURI();
+    }
+
+    @Override
+    public String getClientId() {
+        return client.getClientId();
+    }
+
+    @Override
+    public int getVersion() {
+        return ConfigurationConnection.MQTT_VERSION_5;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public void connect(ConfigurationConnection configuration, SocketFactory socketFactory) throws MqttException {
+        MqttConnectionOptions connOpts = new MqttConnectionOptions();
+        connOpts.setCleanStart(true);
+        connOpts.setAutomaticReconnect(false);
+        connOpts.setUserName(configuration.getUser());
+        connOpts.setPassword(configuration.getPassword().getBytes(StandardCharsets.UTF_8));
+        if (configuration.receiveMaximum > 0) {
+            connOpts.setReceiveMaximum(configuration.receiveMaximum);
+        }
+        if (configuration.topicAliasMaximum > 0) {
+            connOpts.setTopicAliasMaximum(configuration.topicAliasMaximum);
+        }
+        if (socketFactory != null) {
+            connOpts.setSocketFactory(socketFactory);
+        }
+        messageExpiryInterval = configuration.messageExpiryInterval > 0 ? configuration.messageExpiryInterval
+                : null;
+        try {
+            IMqttToken token = client.connect(connOpts);
+            token.waitForCompletion();
+            int inflight = ConfigurationConnection.getMaxInflight(configuration);
+            MqttProperties properties = token.getResponseProperties();
+            if (properties != null && properties.getReceiveMaximum() != null) {
+                // the broker does not accept more unacknowledged messages
+                inflight = Math.min(inflight, properties.getReceiveMaximum());
+            }
+            maxInflight = inflight;
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String topic, MqttMessage message, Map<String, String> userProperties)
+            throws MqttException {
+        return publish(topic, message, userProperties, null, null);
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String topic, MqttMessage message, Map<String, String> userProperties,
+            String responseTopic, byte[] correlationData) throws MqttException {
+        org.eclipse.paho.mqttv5.common.MqttMessage msg = new org.eclipse.paho.mqttv5.common.MqttMessage(
+                message.getPayload());
+        msg.setQos(message.getQos());
+        msg.setRetained(message.isRetained());
+        MqttProperties properties = new MqttProperties();
+        // stale telemetry is dropped by the broker instead of being delivered late
+        properties.setMessageExpiryInterval(messageExpiryInterval);
+        if (userProperties != null && !userProperties.isEmpty()) {
+            List<UserProperty> list = new ArrayList<>();
+            userProperties.forEach((key, value) -> list.add(new UserProperty(key, value)));
+            properties.setUserProperties(list);
+        }
+        if (responseTopic != null) {
+            properties.setResponseTopic(responseTopic);
+            properties.setCorrelationData(correlationData);
+        }
+        msg.setProperties(properties);
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        try {
+            client.publish(topic, msg, null, new MqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    completion.complete(null);
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    completion.completeExceptionally(translate(exception));
+                }
+            });
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw translate(e);
+        }
+        return completion;
+    }
+
+    @Override
+    public void subscribe(String[] topics, int[] qos) throws MqttException {
+        try {
+            client.subscribe(topics, qos).waitForCompletion();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String topic) throws MqttException {
+        try {
+            client.unsubscribe(topic).waitForCompletion();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public void disconnect() throws MqttException {
+        try {
+            client.disconnect().waitForCompletion();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public void close() throws MqttException {
+        try {
+            client.close();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw translate(e);
+        }
+    }
+
+    @Override
+    public int getInflightLimit() {
+        return maxInflight;
+    }
+}
@@ -0,0 +1,138 @@
+package mqtt.bridge.service;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.springframework.stereotype.Component;
+
+import mqtt.bridge.configuration.CompressionRule;
+import mqtt.bridge.model.Compression;
+import mqtt.bridge.model.ValidationError;
+
+/**
+ * Compresses payloads with pooled deflaters and buffers, only the result is
+ * allocated per message. GZIP is written as raw deflate data with the gzip
+ * header and trailer, DEFLATE uses the zlib format as in HTTP.
+ */
+@Component
+public class PayloadCompressor {
+
+    private static final int MAX_POOLED = 64;
+    private static final int BUFFER_SIZE = 16 * 1024;
+    // larger buffers are not kept in the pool
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private static class Context {
+        final Deflater deflater;
+        final CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        Context(Compression compression) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, compression == Compression.GZIP);
+        }
+    }
+
+    private final Map<Compression, Queue<Context>> pools = new EnumMap<>(Compression.class);
+    private final Map<Compression, AtomicInteger> pooled = new EnumMap<>(Compression.class);
+
+    public PayloadCompressor() {
+        for (Compression compression : Compression.values()) {
+            pools.put(compression, new ConcurrentLinkedQueue<>());
+            pooled.put(compression, new AtomicInteger());
+        }
+    }
+
+    public byte[] compress(byte[] payload, Compression compression) {
+        Context context = pools.get(compression).poll();
+        if (context == null) {
+            context = new Context(compression);
+        } else {
+            pooled.get(compression).decrementAndGet();
+        }
+        try {
+            return compress(context, payload, compression == Compression.GZIP);
+        } finally {
+            release(context, compression);
+        }
+    }
+
+    private byte[] compress(Context context, byte[] payload, boolean gzip) {
+        Deflater deflater = context.deflater;
+        deflater.reset();
+        deflater.setInput(payload);
+        deflater.finish();
+        byte[] buffer = context.buffer;
+        int length = 0;
+        if (gzip) {
+            System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+            length = GZIP_HEADER.length;
+        }
+        while (!deflater.finished()) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += deflater.deflate(buffer, length, buffer.length - length);
+        }
+        if (gzip) {
+            if (length + GZIP_TRAILER_SIZE > buffer.length) {
+                buffer = Arrays.copyOf(buffer, length + GZIP_TRAILER_SIZE);
+            }
+            context.crc.reset();
+            context.crc.update(payload);
+            length = writeIntLE(buffer, length, (int) context.crc.getValue());
+            length = writeIntLE(buffer, length, payload.length);
+        }
+        context.buffer = buffer;
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static int writeIntLE(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+        return offset + 4;
+    }
+
+    private void release(Context context, Compression compression) {
+        if (context.buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+            context.buffer = new byte[BUFFER_SIZE];
+        }
+        if (pooled.get(compression).incrementAndGet() <= MAX_POOLED) {
+            pools.get(compression).offer(context);
+        } else {
+            pooled.get(compression).decrementAndGet();
+            context.deflater.end();
+        }
+    }
+
+    /**
+     * Checks the compression rules of a service configuration, every rule
+     * needs a valid topic filter and a compression.
+     */
+    public static Set<ValidationError> validate(List<CompressionRule> rules) {
+        Set<ValidationError> errors = EnumSet.noneOf(ValidationError.class);
+        for (CompressionRule rule : rules) {
+            if (rule == null) {
+                errors.add(ValidationError.TopicFilter_Required);
+                continue;
+            }
+            errors.addAll(TopicFilters.validateRule(rule.topicFilter));
+            if (rule.compression == null) {
+                errors.add(ValidationError.Compression_Required);
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,116 @@
+package mqtt.bridge.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import mqtt.bridge.configuration.PayloadFormatRule;
+import mqtt.bridge.model.PayloadFormat;
+import mqtt.bridge.model.ValidationError;
+
+/**
+ * Writes payloads in the binary formats supported by Jackson.
+ */
+@Component
+public class PayloadFormats {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<PayloadFormat, ObjectMapper> mappers = new EnumMap<>(PayloadFormat.class);
+
+    @PostConstruct
+    private void setup() {
+        mappers.put(PayloadFormat.JSON, objectMapper);
+        mappers.put(PayloadFormat.CBOR, copyWith(new CBORFactory()));
+        mappers.put(PayloadFormat.SMILE, copyWith(new SmileFactory()));
+        mappers.put(PayloadFormat.MSGPACK, copyWith(new MessagePackFactory()));
+    }
+
+    /**
+     * A mapper writing the format of the factory with the settings and the
+     * serializers of the modules of the application mapper, e.g. for dates.
+     * Jackson 2.12 has no ObjectMapper.copyWith, the mappers are only used for
+     * writing.
+     */
+    private ObjectMapper copyWith(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.setConfig(objectMapper.getSerializationConfig());
+        mapper.setSerializerFactory(objectMapper.getSerializerFactory());
+        return mapper;
+    }
+
+    public byte[] write(Object value, PayloadFormat format, PayloadTransformation transformation)
+            throws IOException {
+        if (transformation == null) {
+            return mappers.get(format).writeValueAsBytes(value);
+        }
+        // the value is replayed as tokens, it is not serialized to JSON first
+        TokenBuffer tokens = new TokenBuffer(objectMapper, false);
+        objectMapper.writeValue(tokens, value);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonParser parser = tokens.asParser();
+                JsonGenerator generator = mappers.get(format).getFactory().createGenerator(out)) {
+            transformation.apply(parser, generator);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Converts a JSON document token by token, no tree is built.
+     */
+    public byte[] transcode(byte[] json, PayloadFormat format, PayloadTransformation transformation)
+            throws IOException {
+        if (format == PayloadFormat.JSON && transformation == null) {
+            return json;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = objectMapper.getFactory().createParser(json);
+                JsonGenerator generator = mappers.get(format).getFactory().createGenerator(out)) {
+            if (transformation != null) {
+                transformation.apply(parser, generator);
+            } else {
+                parser.nextToken();
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks the payload format rules of a service configuration, every rule
+     * needs a valid topic filter and a format.
+     */
+    public static Set<ValidationError> validate(List<PayloadFormatRule> rules) {
+        Set<ValidationError> errors = EnumSet.noneOf(ValidationError.class);
+        for (PayloadFormatRule rule : rules) {
+            if (rule == null) {
+                errors.add(ValidationError.TopicFilter_Required);
+                continue;
+            }
+            errors.addAll(TopicFilters.validateRule(rule.topicFilter));
+            if (rule.format == null) {
+                errors.add(ValidationError.PayloadFormat_Required);
+            }
+        }
+        return errors;
+    }
+}
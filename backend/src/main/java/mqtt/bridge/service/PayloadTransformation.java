@@ -0,0 +1,185 @@
+package mqtt.bridge.service;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import mqtt.bridge.configuration.TransformationRule;
+import mqtt.bridge.model.ValidationError;
+
+/**
+ * A transformation rule compiled into a tree of actions per field. The
+ * payload is transformed while it is copied token by token from a parser to
+ * a generator, it is never bound to a map or tree.
+ */
+public class PayloadTransformation {
+
+    private static class Action {
+        boolean drop;
+        String rename;
+        double scale = 1;
+        boolean scaled;
+        // set if the factor is integral, integral values are then scaled without becoming floating point
+        boolean integralScale;
+        final Map<String, Action> children = new HashMap<>();
+    }
+
+    private final Action root = new Action();
+    private final String timestampField;
+
+    private PayloadTransformation(TransformationRule rule) {
+        if (rule.rename != null) {
+            rule.rename.forEach((path, name) -> action(path).rename = name);
+        }
+        if (rule.scale != null) {
+            rule.scale.forEach((path, factor) -> {
+                if (factor == null) {
+                    throw new IllegalArgumentException("No factor to scale " + path);
+                }
+                Action action = action(path);
+                action.scaled = true;
+                action.scale = factor;
+                action.integralScale = factor == Math.rint(factor) && Math.abs(factor) < 0x1p63;
+            });
+        }
+        if (rule.drop != null) {
+            rule.drop.forEach(path -> action(path).drop = true);
+        }
+        timestampField = rule.timestampField;
+        checkNames(root, "", timestampField);
+    }
+
+    /**
+     * Rejects rules that write two fields with the same name into an object,
+     * e.g. a rename to the name of another field of the rule or to the
+     * timestamp field. A field of the payload that is not part of the rule is
+     * replaced by the field renamed to its name.
+     */
+    private static void checkNames(Action action, String path, String timestampField) {
+        Map<String, String> written = new HashMap<>();
+        if (timestampField != null) {
+            written.put(timestampField, "timestampField");
+        }
+        List<String> replaced = new ArrayList<>();
+        for (Map.Entry<String, Action> child : action.children.entrySet()) {
+            Action field = child.getValue();
+            if (field.drop) {
+                continue;
+            }
+            String name = field.rename != null ? field.rename : child.getKey();
+            String other = written.put(name, path + child.getKey());
+            if (other != null) {
+                throw new IllegalArgumentException(
+                        "Fields " + other + " and " + path + child.getKey() + " are both written as " + name);
+            }
+            if (field.rename != null && !action.children.containsKey(field.rename)) {
+                replaced.add(field.rename);
+            }
+            checkNames(field, path + child.getKey() + ".", null);
+        }
+        Set<String> names = new HashSet<>(replaced);
+        if (timestampField != null && !action.children.containsKey(timestampField)) {
+            names.add(timestampField);
+        }
+        for (String name : names) {
+            action.children.put(name, dropAction());
+        }
+    }
+
+    private static Action dropAction() {
+        Action action = new Action();
+        action.drop = true;
+        return action;
+    }
+
+    // rejects rules without a valid topic filter, they would break the lookup of every topic
+    public static PayloadTransformation compile(TransformationRule rule) {
+        if (rule == null) {
+            throw new IllegalArgumentException("Rule is empty");
+        }
+        Set<ValidationError> errors = TopicFilters.validateRule(rule.topicFilter);
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Invalid topic filter " + rule.topicFilter + ": " + errors);
+        }
+        return new PayloadTransformation(rule);
+    }
+
+    private Action action(String path) {
+        Action action = root;
+        for (String name : path.split("\\.")) {
+            action = action.children.computeIfAbsent(name, n -> new Action());
+        }
+        return action;
+    }
+
+    /**
+     * Copies the next value of the parser to the generator. Only objects are
+     * transformed, other values are copied unchanged.
+     */
+    public void apply(JsonParser parser, JsonGenerator generator) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            generator.copyCurrentStructure(parser);
+            return;
+        }
+        transformObject(parser, generator, root);
+        if (timestampField != null) {
+            generator.writeStringField(timestampField, Instant.now().toString());
+        }
+        generator.writeEndObject();
+    }
+
+    // writes the start and the fields of the current object, the caller writes the end
+    private void transformObject(JsonParser parser, JsonGenerator generator, Action action) throws IOException {
+        generator.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            Action field = action.children.get(name);
+            JsonToken value = parser.nextToken();
+            if (field == null) {
+                generator.writeFieldName(name);
+                generator.copyCurrentStructure(parser);
+            } else if (field.drop) {
+                parser.skipChildren();
+            } else {
+                generator.writeFieldName(field.rename != null ? field.rename : name);
+                if (value == JsonToken.START_OBJECT && !field.children.isEmpty()) {
+                    transformObject(parser, generator, field);
+                    generator.writeEndObject();
+                } else if (field.scaled && value.isNumeric()) {
+                    writeScaled(parser, generator, value, field);
+                } else {
+                    generator.copyCurrentStructure(parser);
+                }
+            }
+        }
+    }
+
+    // an integral value stays integral with an integral factor, e.g. a count of milliseconds
+    private static void writeScaled(JsonParser parser, JsonGenerator generator, JsonToken value, Action field)
+            throws IOException {
+        if (value != JsonToken.VALUE_NUMBER_INT || !field.integralScale) {
+            generator.writeNumber(parser.getDoubleValue() * field.scale);
+            return;
+        }
+        long factor = (long) field.scale;
+        if (parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+            try {
+                generator.writeNumber(Math.multiplyExact(parser.getLongValue(), factor));
+                return;
+            } catch (ArithmeticException e) {
+                // beyond the range of long
+            }
+        }
+        generator.writeNumber(parser.getBigIntegerValue().multiply(BigInteger.valueOf(factor)));
+    }
+}
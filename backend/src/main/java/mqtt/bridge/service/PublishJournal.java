@@ -0,0 +1,289 @@
+package mqtt.bridge.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only journal of publishes that could not be delivered to the broker.
+ * Records are written to memory-mapped segment files of a fixed size and read
+ * back in the order they were appended. Segments are deleted as soon as all
+ * their records were replayed, pending records survive a restart. A record
+ * read with {@link #peek()} is acknowledged by its entry, so a record evicted
+ * in the meantime is never confused with its successor.
+ * <p>
+ * Record layout: length (int, excluding itself), state (byte), qos (byte),
+ * retained (byte), topic length (short), topic, payload. The length is written
+ * last, a zero length marks the end of the written part of a segment.
+ */
+@Slf4j
+public class PublishJournal implements Closeable {
+
+    public enum EvictionPolicy {
+        DROP_OLDEST,
+        REJECT_NEW,
+    }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 1 + 2;
+    private static final byte STATE_PENDING = 1;
+    private static final byte STATE_REPLAYED = 2;
+
+    @AllArgsConstructor
+    @Getter
+    public static class Entry {
+        private String topic;
+        private byte[] payload;
+        private int qos;
+        private boolean retained;
+        // location of the record, checked when it is acknowledged
+        private long segment;
+        private int position;
+    }
+
+    private static class Segment {
+        final long id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        int readPosition;
+
+        Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+    private final EvictionPolicy evictionPolicy;
+
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long pending;
+    private long evicted;
+    private long discarded;
+
+    public PublishJournal(Path directory, int segmentSize, long maxSize, EvictionPolicy evictionPolicy)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = Math.max(maxSize, segmentSize);
+        this.evictionPolicy = evictionPolicy;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Segment segment = map(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            scan(segment);
+            segments.addLast(segment);
+        }
+        // drop replayed segments, except the last one which is still used for writing
+        while (segments.size() > 1 && segments.peekFirst().readPosition == segments.peekFirst().writePosition) {
+            delete(segments.pollFirst());
+        }
+        if (pending > 0) {
+            log.info("Recovered {} pending records from journal {}", pending, directory);
+        }
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int position = 0;
+        int firstPending = -1;
+        while (position + 4 <= segmentSize) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + 4 + length > segmentSize) {
+                break;
+            }
+            if (buffer.get(position + 4) == STATE_PENDING) {
+                if (firstPending < 0) {
+                    firstPending = position;
+                }
+                pending++;
+            }
+            position += 4 + length;
+        }
+        segment.writePosition = position;
+        segment.readPosition = firstPending < 0 ? position : firstPending;
+    }
+
+    /**
+     * Appends a record to the tail of the journal.
+     * 
+     * @return false if the journal is full and the eviction policy rejects new
+     *         records
+     */
+    public synchronized boolean append(String topic, byte[] payload, int qos, boolean retained) throws IOException {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        int size = HEADER_SIZE + topicBytes.length + payload.length;
+        if (size > segmentSize) {
+            throw new IllegalArgumentException("Payload of " + payload.length + " bytes exceeds the journal segment size");
+        }
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writePosition + size > segmentSize) {
+            if (!makeRoom()) {
+                return false;
+            }
+            tail = map(tail == null ? 0 : tail.id + 1, null);
+            segments.addLast(tail);
+        }
+        int position = tail.writePosition;
+        ByteBuffer buffer = tail.buffer.duplicate();
+        buffer.position(position + 4);
+        buffer.put(STATE_PENDING);
+        buffer.put((byte) qos);
+        buffer.put((byte) (retained ? 1 : 0));
+        buffer.putShort((short) topicBytes.length);
+        buffer.put(topicBytes);
+        buffer.put(payload);
+        // the length is written last, so a partially written record is never read
+        tail.buffer.putInt(position, size - 4);
+        tail.writePosition = position + size;
+        pending++;
+        return true;
+    }
+
+    private boolean makeRoom() {
+        while ((segments.size() + 1) * (long) segmentSize > maxSize && !segments.isEmpty()) {
+            if (evictionPolicy == EvictionPolicy.REJECT_NEW) {
+                return false;
+            }
+            Segment head = segments.pollFirst();
+            long dropped = countPending(head);
+            pending -= dropped;
+            evicted += dropped;
+            log.warn("Journal is full, dropped {} records of segment {}", dropped, head.path);
+            delete(head);
+        }
+        return true;
+    }
+
+    private long countPending(Segment segment) {
+        long count = 0;
+        int position = segment.readPosition;
+        while (position < segment.writePosition) {
+            count++;
+            position += 4 + segment.buffer.getInt(position);
+        }
+        return count;
+    }
+
+    /**
+     * @return the oldest pending record or null if the journal is empty
+     */
+    public synchronized Entry peek() {
+        Segment head = segments.peekFirst();
+        while (head != null && head.readPosition == head.writePosition) {
+            if (segments.size() == 1) {
+                return null;
+            }
+            delete(segments.pollFirst());
+            head = segments.peekFirst();
+        }
+        if (head == null) {
+            return null;
+        }
+        ByteBuffer buffer = head.buffer.duplicate();
+        int length = buffer.getInt(head.readPosition);
+        buffer.position(head.readPosition + 5);
+        int qos = buffer.get();
+        boolean retained = buffer.get() == 1;
+        byte[] topic = new byte[buffer.getShort() & 0xffff];
+        buffer.get(topic);
+        byte[] payload = new byte[length - (HEADER_SIZE - 4) - topic.length];
+        buffer.get(payload);
+        return new Entry(new String(topic, StandardCharsets.UTF_8), payload, qos, retained, head.id,
+                head.readPosition);
+    }
+
+    /**
+     * Marks the record of the entry as replayed.
+     *
+     * @return false if the record is no longer the oldest pending record, e.g.
+     *         because its segment was evicted since it was read
+     */
+    public synchronized boolean acknowledge(Entry entry) {
+        Segment head = segments.peekFirst();
+        if (head == null || head.id != entry.segment || head.readPosition != entry.position
+                || head.readPosition == head.writePosition) {
+            return false;
+        }
+        head.buffer.put(head.readPosition + 4, STATE_REPLAYED);
+        head.readPosition += 4 + head.buffer.getInt(head.readPosition);
+        pending--;
+        if (head.readPosition == head.writePosition && segments.size() > 1) {
+            delete(segments.pollFirst());
+        }
+        return true;
+    }
+
+    /**
+     * Removes a record that can't be published, e.g. because the broker
+     * rejected it, so that it doesn't block the records behind it.
+     */
+    public synchronized boolean discard(Entry entry) {
+        if (!acknowledge(entry)) {
+            return false;
+        }
+        discarded++;
+        return true;
+    }
+
+    public synchronized long getPending() {
+        return pending;
+    }
+
+    public synchronized long getEvicted() {
+        return evicted;
+    }
+
+    public synchronized long getDiscarded() {
+        return discarded;
+    }
+
+    private Segment map(long id, Path file) throws IOException {
+        Path path = file != null ? file : directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        }
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("Could not delete journal segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        segments.forEach(segment -> segment.buffer.force());
+    }
+}
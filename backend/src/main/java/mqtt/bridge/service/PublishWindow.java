@@ -0,0 +1,106 @@
+package mqtt.bridge.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.IntSupplier;
+
+/**
+ * Limits the number of publishes in flight to the broker. Callers that don't
+ * get a permit wait in a bounded queue without holding a thread, they are
+ * called back in order as soon as a publish completes. Permits are handed
+ * over in a loop by a single thread at a time, a callback that releases its
+ * permit right away doesn't recurse into the next one.
+ */
+public class PublishWindow {
+
+    private final IntSupplier limit;
+    private final int maxWaiting;
+    // in order of arrival, callers that give up are removed in constant time
+    private final LinkedHashSet<Runnable> waiting = new LinkedHashSet<>();
+    private int inUse;
+    // true while a thread hands over permits to waiting callers
+    private boolean dispatching;
+
+    public PublishWindow(IntSupplier limit, int maxWaiting) {
+        this.limit = limit;
+        this.maxWaiting = maxWaiting;
+    }
+
+    /**
+     * Runs onPermit once a permit is available, either immediately or when a
+     * permit is released. The same instance must be passed to
+     * {@link #cancel(Runnable)}.
+     *
+     * @return false if the queue of waiting callers is full
+     */
+    public boolean acquire(Runnable onPermit) {
+        synchronized (this) {
+            if (inUse >= limit.getAsInt()) {
+                if (waiting.size() >= maxWaiting) {
+                    return false;
+                }
+                waiting.add(onPermit);
+                return true;
+            }
+            inUse++;
+        }
+        onPermit.run();
+        return true;
+    }
+
+    /**
+     * Removes a caller that no longer waits for a permit, e.g. because its
+     * request timed out.
+     *
+     * @return false if the caller was not waiting, it got a permit already or
+     *         is about to get one
+     */
+    public synchronized boolean cancel(Runnable onPermit) {
+        return waiting.remove(onPermit);
+    }
+
+    public void release() {
+        synchronized (this) {
+            inUse--;
+            if (dispatching) {
+                // the thread handing over permits picks up the free one
+                return;
+            }
+            dispatching = true;
+        }
+        Runnable next = null;
+        try {
+            while ((next = nextWaiting()) != null) {
+                next.run();
+            }
+        } finally {
+            if (next != null) {
+                // a callback failed, let the next release continue
+                synchronized (this) {
+                    dispatching = false;
+                }
+            }
+        }
+    }
+
+    // takes a permit for the first waiting caller, stops dispatching if there is none or no permit is free
+    private synchronized Runnable nextWaiting() {
+        Iterator<Runnable> iterator = waiting.iterator();
+        if (!iterator.hasNext() || inUse >= limit.getAsInt()) {
+            dispatching = false;
+            return null;
+        }
+        Runnable next = iterator.next();
+        iterator.remove();
+        inUse++;
+        return next;
+    }
+
+    public synchronized int getInUse() {
+        return inUse;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+}
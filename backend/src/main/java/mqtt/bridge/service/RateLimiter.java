@@ -0,0 +1,83 @@
+package mqtt.bridge.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mqtt.bridge.configuration.RateLimitRule;
+
+/**
+ * The token buckets of the rate limit rules of a service configuration. A
+ * message must get a token from every rule matching its topic. Buckets of
+ * rules per client are created on first use and dropped when they are full
+ * again.
+ */
+public class RateLimiter {
+
+    private final List<RateLimitRule> rules = new ArrayList<>();
+    private final List<TokenBucket> shared = new ArrayList<>();
+    private final List<Map<String, TokenBucket>> perClient = new ArrayList<>();
+
+    public RateLimiter(List<RateLimitRule> configuration) {
+        for (RateLimitRule rule : configuration) {
+            if (rule.rate <= 0) {
+                continue;
+            }
+            rules.add(rule);
+            shared.add(rule.perClient ? null : new TokenBucket(rule.rate, rule.burst));
+            perClient.add(rule.perClient ? new ConcurrentHashMap<>() : null);
+        }
+    }
+
+    /**
+     * Returns 0 if the message can be sent, otherwise the nanos after which
+     * it should be tried again. Tokens of a rejected message are returned.
+     */
+    public long acquire(String topic, String client) {
+        for (int i = 0; i < rules.size(); i++) {
+            RateLimitRule rule = rules.get(i);
+            if (rule.topicFilter != null && !TopicFilters.matches(rule.topicFilter, topic)) {
+                continue;
+            }
+            long wait = bucket(i, client).tryAcquire();
+            if (wait > 0) {
+                release(i, topic, client);
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    private TokenBucket bucket(int index, String client) {
+        TokenBucket bucket = shared.get(index);
+        if (bucket == null) {
+            RateLimitRule rule = rules.get(index);
+            bucket = perClient.get(index).computeIfAbsent(client != null ? client : "",
+                    c -> new TokenBucket(rule.rate, rule.burst));
+        }
+        return bucket;
+    }
+
+    // returns the tokens taken from the rules before the one that rejected the message
+    private void release(int rejected, String topic, String client) {
+        for (int i = 0; i < rejected; i++) {
+            RateLimitRule rule = rules.get(i);
+            if (rule.topicFilter == null || TopicFilters.matches(rule.topicFilter, topic)) {
+                bucket(i, client).release();
+            }
+        }
+    }
+
+    public int purge() {
+        int purged = 0;
+        for (Map<String, TokenBucket> buckets : perClient) {
+            if (buckets != null) {
+                int before = buckets.size();
+                buckets.values().removeIf(TokenBucket::isFull);
+                purged += before - buckets.size();
+            }
+        }
+        return purged;
+    }
+}
@@ -0,0 +1,140 @@
+package mqtt.bridge.service;
+
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+
+import lombok.Getter;
+
+/**
+ * Requests waiting for a reply, found by their correlation id. Timeouts are
+ * kept in a hashed timer wheel: a request is put into the slot of the tick
+ * it expires at, and every tick only looks at its own slot. Replied requests
+ * are removed from their slot when the slot comes up. Ids are random 128 bit
+ * values, other clients of the broker can't guess the reply topic of a
+ * request.
+ */
+public class ReplyTracker {
+
+    public static final long TICK_MS = 100;
+
+    // power of two, covers timeouts up to WHEEL_SIZE * TICK_MS in one round
+    private static final int WHEEL_SIZE = 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public static class Pending {
+        @Getter
+        private final String id;
+        private final long deadline;
+        // completes with the payload of the reply or with a TimeoutException
+        @Getter
+        private final CompletableFuture<byte[]> reply = new CompletableFuture<>();
+
+        Pending(String id, long deadline) {
+            this.id = id;
+            this.deadline = deadline;
+        }
+    }
+
+    private final SecureRandom random = new SecureRandom();
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    @SuppressWarnings("unchecked")
+    private final Queue<Pending>[] wheel = new Queue[WHEEL_SIZE];
+    private volatile long tick;
+    // time of the last tick in ms, only used by the thread advancing the wheel
+    private long lastTick;
+
+    public ReplyTracker() {
+        this(System.currentTimeMillis());
+    }
+
+    ReplyTracker(long now) {
+        lastTick = now;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Registers a request expiring after the timeout, its id is used as
+     * correlation id.
+     */
+    public Pending register(long timeout) {
+        String id = newId();
+        // at least one full tick, the current tick may be about to end
+        long deadline = tick + 1 + (timeout + TICK_MS - 1) / TICK_MS;
+        Pending request = new Pending(id, deadline);
+        pending.put(id, request);
+        wheel[(int) (deadline & (WHEEL_SIZE - 1))].add(request);
+        return request;
+    }
+
+    // false if the request is unknown, e.g. a late reply after the timeout
+    public boolean complete(String id, byte[] payload) {
+        Pending request = pending.remove(id);
+        return request != null && request.reply.complete(payload);
+    }
+
+    public void fail(String id, Throwable cause) {
+        Pending request = pending.remove(id);
+        if (request != null) {
+            request.reply.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Advances the wheel by the ticks elapsed since the last call and expires
+     * the requests of their slots, a late call doesn't lengthen the timeouts.
+     * Called every TICK_MS from a single thread.
+     */
+    public int advance(long now) {
+        long ticks = (now - lastTick) / TICK_MS;
+        if (ticks <= 0) {
+            return 0;
+        }
+        lastTick += ticks * TICK_MS;
+        long target = tick + ticks;
+        // after a full round every slot has been looked at
+        if (ticks > WHEEL_SIZE) {
+            tick = target - WHEEL_SIZE;
+        }
+        int expired = 0;
+        while (tick < target) {
+            long current = ++tick;
+            Iterator<Pending> requests = wheel[(int) (current & (WHEEL_SIZE - 1))].iterator();
+            while (requests.hasNext()) {
+                Pending request = requests.next();
+                if (request.reply.isDone()) {
+                    requests.remove();
+                } else if (request.deadline <= current) {
+                    requests.remove();
+                    if (pending.remove(request.id, request)) {
+                        request.reply.completeExceptionally(new TimeoutException("No reply within the timeout"));
+                        expired++;
+                    }
+                }
+            }
+        }
+        return expired;
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    private String newId() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        char[] id = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            id[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            id[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(id);
+    }
+}
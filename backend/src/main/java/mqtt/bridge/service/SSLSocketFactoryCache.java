@@ -0,0 +1,79 @@
+package mqtt.bridge.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps a ready SSLSocketFactory per certificate fingerprint. Reusing the
+ * factory avoids parsing the certificate and setting up the trust store on
+ * every reconnect, and the TLS sessions cached by its SSLContext can be
+ * resumed. At most MAX_FACTORIES factories are kept, the least recently used
+ * one is dropped first.
+ */
+@Slf4j
+@Component
+public class SSLSocketFactoryCache {
+
+    private static final int MAX_FACTORIES = 100;
+
+    // guarded by itself, in access order
+    @SuppressWarnings("serial")
+    private final Map<String, SSLSocketFactory> factories = new LinkedHashMap<String, SSLSocketFactory>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SSLSocketFactory> eldest) {
+            return size() > MAX_FACTORIES;
+        }
+    };
+
+    public SSLSocketFactory get(MQTTClient.Certificate cert) throws GeneralSecurityException, IOException {
+        String key = cert.getFingerprint() != null ? cert.getFingerprint() : cert.getCertInPemFormat();
+        SSLSocketFactory factory;
+        synchronized (factories) {
+            factory = factories.get(key);
+        }
+        if (factory == null) {
+            // created outside the lock, a concurrent creation for the same certificate is harmless
+            factory = create(cert);
+            synchronized (factories) {
+                factories.put(key, factory);
+            }
+        }
+        return factory;
+    }
+
+    private SSLSocketFactory create(MQTTClient.Certificate cert) throws GeneralSecurityException, IOException {
+        log.info("Creating socket factory for certificate with fingerprint {}", cert.getFingerprint());
+        KeyStore trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("Custom CA",
+                (X509Certificate) CertificateFactory.getInstance("X509")
+                        .generateCertificate(new ByteArrayInputStream(
+                                cert.getCertInPemFormat().getBytes(Charset.defaultCharset()))));
+
+        TrustManagerFactory tmf = TrustManagerFactory
+                .getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trustStore);
+        TrustManager[] trustManagers = tmf.getTrustManagers();
+
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+        sslContext.init(null, trustManagers, null);
+        return sslContext.getSocketFactory();
+    }
+}
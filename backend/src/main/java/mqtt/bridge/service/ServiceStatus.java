@@ -7,6 +7,15 @@ import lombok.Data;
 @AllArgsConstructor
 public class ServiceStatus {
     private Status status;
+
+    // number of connected members of the connection pool
+    private int connectedClients;
+
+    private int poolSize;
+
+    public ServiceStatus(Status status) {
+        this.status = status;
+    }
     
     public static ServiceStatus connected() {
         return new ServiceStatus(Status.CONNECTED);
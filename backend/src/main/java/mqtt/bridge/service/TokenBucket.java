@@ -0,0 +1,52 @@
+package mqtt.bridge.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket following the generic cell rate algorithm. The only
+ * state is the theoretical arrival time of the next message, updated with a
+ * compare-and-set, so concurrent callers never block each other.
+ */
+public class TokenBucket {
+
+    // nanos between two messages at the configured rate
+    private final long interval;
+    // how far the arrival time may run ahead of now, defines the burst
+    private final long tolerance;
+    private final AtomicLong arrival;
+
+    public TokenBucket(double rate, int burst) {
+        this.interval = Math.max(1, (long) (1_000_000_000L / rate));
+        this.tolerance = interval * (Math.max(1, burst) - 1);
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a token, returns 0 if one was available and otherwise the nanos
+     * until the next token becomes available.
+     */
+    public long tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, now) + interval;
+            long ahead = next - now - interval;
+            if (ahead > tolerance) {
+                return ahead - tolerance;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // returns a token taken by tryAcquire when the message was rejected by another bucket
+    public void release() {
+        arrival.addAndGet(-interval);
+    }
+
+    // a bucket is full when the arrival time lies in the past, it can be dropped and created again
+    public boolean isFull() {
+        return arrival.get() - System.nanoTime() <= 0;
+    }
+}
@@ -0,0 +1,88 @@
+package mqtt.bridge.service;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import mqtt.bridge.model.ValidationError;
+
+public final class TopicFilters {
+
+    public static final String SINGLE_LEVEL_WILDCARD = "+";
+    public static final String MULTI_LEVEL_WILDCARD = "#";
+
+    private TopicFilters() {
+    }
+
+    /**
+     * Matches a topic against an MQTT topic filter with the wildcards + and #,
+     * without allocating.
+     */
+    public static boolean matches(String filter, String topic) {
+        int fi = 0;
+        int ti = 0;
+        while (fi <= filter.length()) {
+            int fe = filter.indexOf('/', fi);
+            if (fe < 0) {
+                fe = filter.length();
+            }
+            if (fe - fi == 1 && filter.charAt(fi) == '#') {
+                return true;
+            }
+            if (ti > topic.length()) {
+                return false;
+            }
+            int te = topic.indexOf('/', ti);
+            if (te < 0) {
+                te = topic.length();
+            }
+            boolean wildcard = fe - fi == 1 && filter.charAt(fi) == '+';
+            if (!wildcard && (fe - fi != te - ti || !filter.regionMatches(fi, topic, ti, fe - fi))) {
+                return false;
+            }
+            fi = fe + 1;
+            ti = te + 1;
+        }
+        return ti > topic.length();
+    }
+
+    /**
+     * Checks the wildcards of a topic filter. A wildcard must be a whole
+     * level, e.g. a+b and foo# are rejected.
+     */
+    public static Set<ValidationError> validate(String filter) {
+        Set<ValidationError> errors = EnumSet.noneOf(ValidationError.class);
+        String[] levels = filter.split("/", -1);
+        int singleLevel = 0;
+        int multiLevel = 0;
+        for (int i = 0; i < levels.length; i++) {
+            if (SINGLE_LEVEL_WILDCARD.equals(levels[i])) {
+                singleLevel++;
+            } else if (MULTI_LEVEL_WILDCARD.equals(levels[i])) {
+                multiLevel++;
+                if (i != levels.length - 1) {
+                    errors.add(ValidationError.Multi_Level_Wildcard_Only_At_End);
+                }
+            } else if (levels[i].contains(SINGLE_LEVEL_WILDCARD) || levels[i].contains(MULTI_LEVEL_WILDCARD)) {
+                errors.add(ValidationError.Wildcard_Must_Occupy_Entire_Level);
+            }
+        }
+        if (singleLevel > 1) {
+            errors.add(ValidationError.Only_One_Single_Level_Wildcard);
+        }
+        if (multiLevel > 1) {
+            errors.add(ValidationError.Only_One_Multi_Level_Wildcard);
+        }
+        return errors;
+    }
+
+    /**
+     * Checks the topic filter of a configuration rule, unlike the filter of a
+     * subscription it must be set.
+     */
+    public static Set<ValidationError> validateRule(String filter) {
+        if (filter == null || filter.isEmpty()) {
+            return EnumSet.of(ValidationError.TopicFilter_Required);
+        }
+        return validate(filter);
+    }
+}
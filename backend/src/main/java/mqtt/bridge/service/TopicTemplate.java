@@ -0,0 +1,224 @@
+package mqtt.bridge.service;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import mqtt.bridge.configuration.TopicTemplateConfiguration;
+import mqtt.bridge.model.ResolveException;
+import mqtt.bridge.model.ValidationError;
+
+/**
+ * A topic template like devices/{$.deviceId}/measurements/{$.type}. The
+ * template is parsed once into literal parts and JSON pointers, resolving a
+ * topic only looks up the pointers in the payload.
+ */
+public class TopicTemplate {
+
+    // literal text or the pointer of a substitution
+    private static class Part {
+        final String literal;
+        final JsonPointer pointer;
+        final String expression;
+
+        Part(String literal, JsonPointer pointer, String expression) {
+            this.literal = literal;
+            this.pointer = pointer;
+            this.expression = expression;
+        }
+    }
+
+    private final String template;
+    // null if resolved topics are not restricted
+    private final String topicFilter;
+    private final Part[] parts;
+    private final int literalLength;
+
+    private TopicTemplate(String template, String topicFilter, List<Part> parts) {
+        this.template = template;
+        this.topicFilter = topicFilter == null || topicFilter.isEmpty() ? null : topicFilter;
+        this.parts = parts.toArray(new Part[0]);
+        int length = 0;
+        for (Part part : parts) {
+            length += part.literal != null ? part.literal.length() : 0;
+        }
+        this.literalLength = length;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public static TopicTemplate compile(String template) {
+        return compile(template, null);
+    }
+
+    /**
+     * Throws IllegalArgumentException if the template has an invalid
+     * substitution.
+     */
+    public static TopicTemplate compile(String template, String topicFilter) {
+        return new TopicTemplate(template, topicFilter, parse(template));
+    }
+
+    public String resolve(JsonNode payload) throws ResolveException {
+        StringBuilder topic = new StringBuilder(literalLength + 16 * parts.length);
+        for (Part part : parts) {
+            if (part.literal != null) {
+                topic.append(part.literal);
+                continue;
+            }
+            JsonNode node = payload.at(part.pointer);
+            if (!node.isValueNode() || node.isNull()) {
+                throw new ResolveException("Payload has no value for " + part.expression);
+            }
+            String value = node.asText();
+            // a value must not add levels or wildcards to the topic
+            if (value.isEmpty() || value.indexOf('/') >= 0 || value.indexOf('+') >= 0 || value.indexOf('#') >= 0) {
+                throw new ResolveException("Value '" + value + "' of " + part.expression + " is not a valid topic level");
+            }
+            topic.append(value);
+        }
+        String resolved = topic.toString();
+        if (topicFilter != null && !TopicFilters.matches(topicFilter, resolved)) {
+            throw new ResolveException("Topic " + resolved + " does not match the filter " + topicFilter);
+        }
+        return resolved;
+    }
+
+    // splits the template in literal parts and substitutions {$.a.b} or {$.a[0]}
+    private static List<Part> parse(String template) {
+        List<Part> parts = new ArrayList<>();
+        int position = 0;
+        while (position < template.length()) {
+            int start = template.indexOf('{', position);
+            if (start < 0) {
+                parts.add(new Part(template.substring(position), null, null));
+                break;
+            }
+            if (start > position) {
+                parts.add(new Part(template.substring(position, start), null, null));
+            }
+            int end = template.indexOf('}', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated substitution in " + template);
+            }
+            String expression = template.substring(start + 1, end);
+            parts.add(new Part(null, toPointer(expression), expression));
+            position = end + 1;
+        }
+        return parts;
+    }
+
+    private static JsonPointer toPointer(String expression) {
+        if (!expression.startsWith("$.") || expression.length() == 2) {
+            throw new IllegalArgumentException("Substitution must start with $. : " + expression);
+        }
+        StringBuilder pointer = new StringBuilder();
+        for (String field : expression.substring(2).split("\\.", -1)) {
+            int index = field.indexOf('[');
+            String name = index < 0 ? field : field.substring(0, index);
+            if (name.isEmpty() || name.indexOf('{') >= 0) {
+                throw new IllegalArgumentException("Invalid field in substitution " + expression);
+            }
+            pointer.append('/').append(name.replace("~", "~0").replace("/", "~1"));
+            while (index >= 0) {
+                int close = field.indexOf(']', index);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Invalid index in substitution " + expression);
+                }
+                pointer.append('/').append(Integer.parseInt(field.substring(index + 1, close)));
+                index = field.indexOf('[', close);
+            }
+        }
+        return JsonPointer.compile(pointer.toString());
+    }
+
+    /**
+     * Checks a single template and its optional topic filter.
+     */
+    public static Set<ValidationError> validate(String template, String topicFilter) {
+        Set<ValidationError> errors = EnumSet.noneOf(ValidationError.class);
+        List<Part> parts;
+        try {
+            parts = parse(template);
+        } catch (IllegalArgumentException e) {
+            errors.add(ValidationError.TemplateTopic_Invalid_Substitution);
+            return errors;
+        }
+        for (Part part : parts) {
+            if (part.literal != null && (part.literal.contains(TopicFilters.SINGLE_LEVEL_WILDCARD)
+                    || part.literal.contains(TopicFilters.MULTI_LEVEL_WILDCARD))) {
+                errors.add(ValidationError.TemplateTopic_Must_Not_Contain_Wildcards);
+            }
+        }
+        if (topicFilter == null || topicFilter.isEmpty()) {
+            return errors;
+        }
+
+        String[] filterLevels = topicFilter.split("/", -1);
+        errors.addAll(TopicFilters.validate(topicFilter));
+
+        // literal levels must match the filter, substitutions are only allowed where the filter has a wildcard
+        String[] templateLevels = template.split("/", -1);
+        for (int i = 0; i < templateLevels.length; i++) {
+            String level = templateLevels[i];
+            if (i >= filterLevels.length) {
+                errors.add(ValidationError.TemplateTopic_Must_Match_The_SubscriptionTopic);
+                break;
+            }
+            String filterLevel = filterLevels[i];
+            if (TopicFilters.MULTI_LEVEL_WILDCARD.equals(filterLevel)) {
+                break;
+            }
+            boolean substitution = level.indexOf('{') >= 0;
+            if (TopicFilters.SINGLE_LEVEL_WILDCARD.equals(filterLevel)) {
+                // the level at the single level wildcard identifies the device
+                if (level.indexOf('{') != level.lastIndexOf('{')) {
+                    errors.add(ValidationError.Only_One_Substitution_Defining_Device_Identifier_Can_Be_Used);
+                }
+            } else if (substitution || !filterLevel.equals(level)) {
+                errors.add(ValidationError.TemplateTopic_Must_Match_The_SubscriptionTopic);
+            }
+        }
+        if (templateLevels.length < filterLevels.length
+                && !(templateLevels.length == filterLevels.length - 1
+                        && TopicFilters.MULTI_LEVEL_WILDCARD.equals(filterLevels[filterLevels.length - 1]))) {
+            errors.add(ValidationError.TemplateTopic_Must_Match_The_SubscriptionTopic);
+        }
+        return errors;
+    }
+
+    /**
+     * Checks all templates of the service configuration, including the rules
+     * between templates.
+     */
+    public static Set<ValidationError> validate(List<TopicTemplateConfiguration> templates) {
+        Set<ValidationError> errors = EnumSet.noneOf(ValidationError.class);
+        Set<String> names = new HashSet<>();
+        Set<String> topics = new HashSet<>();
+        for (TopicTemplateConfiguration configuration : templates) {
+            if (configuration == null || configuration.name == null || configuration.template == null) {
+                errors.add(ValidationError.TemplateTopic_Name_And_Template_Required);
+                continue;
+            }
+            if (!names.add(configuration.name) || !topics.add(configuration.template)) {
+                errors.add(ValidationError.TemplateTopic_Not_Unique);
+            }
+            errors.addAll(validate(configuration.template, configuration.topicFilter));
+            for (TopicTemplateConfiguration other : templates) {
+                if (other != null && other != configuration && other.template != null
+                        && !other.template.equals(configuration.template)
+                        && other.template.startsWith(configuration.template)) {
+                    errors.add(ValidationError.TemplateTopic_Must_Not_Be_Substring_Of_Other_TemplateTopic);
+                }
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,86 @@
+package mqtt.bridge.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Index of topic filters by their levels. Matching a topic walks one path per
+ * wildcard instead of testing every filter, the cost depends on the depth of
+ * the topic and not on the number of filters. Lookups don't lock, changes are
+ * serialized.
+ */
+public class TopicTrie<T> {
+
+    private static class Node<T> {
+        final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+        // values of the filters ending at this node
+        final Set<T> values = ConcurrentHashMap.newKeySet();
+
+        boolean isEmpty() {
+            return children.isEmpty() && values.isEmpty();
+        }
+    }
+
+    private final Node<T> root = new Node<>();
+
+    public synchronized void add(String filter, T value) {
+        Node<T> node = root;
+        for (String level : filter.split("/", -1)) {
+            node = node.children.computeIfAbsent(level, l -> new Node<>());
+        }
+        node.values.add(value);
+    }
+
+    public synchronized void remove(String filter, T value) {
+        remove(root, filter.split("/", -1), 0, value);
+    }
+
+    // removes the value and prunes the nodes left empty, returns true if the node is empty
+    private boolean remove(Node<T> node, String[] levels, int depth, T value) {
+        if (depth == levels.length) {
+            node.values.remove(value);
+            return node.isEmpty();
+        }
+        Node<T> child = node.children.get(levels[depth]);
+        if (child != null && remove(child, levels, depth + 1, value)) {
+            node.children.remove(levels[depth]);
+        }
+        return node.isEmpty();
+    }
+
+    /**
+     * Passes the value of every filter matching the topic to the consumer. A
+     * value added with several matching filters is passed once per filter.
+     */
+    public void match(String topic, Consumer<T> consumer) {
+        String[] levels = topic.split("/", -1);
+        // wildcards at the first level don't match topics starting with $, e.g. $SYS
+        match(root, levels, 0, !topic.startsWith("$"), consumer);
+    }
+
+    private void match(Node<T> node, String[] levels, int depth, boolean wildcards, Consumer<T> consumer) {
+        if (wildcards || depth > 0) {
+            Node<T> multiLevel = node.children.get(TopicFilters.MULTI_LEVEL_WILDCARD);
+            if (multiLevel != null) {
+                // # also matches the parent level, e.g. a/# matches a
+                multiLevel.values.forEach(consumer);
+            }
+        }
+        if (depth == levels.length) {
+            node.values.forEach(consumer);
+            return;
+        }
+        Node<T> child = node.children.get(levels[depth]);
+        if (child != null) {
+            match(child, levels, depth + 1, true, consumer);
+        }
+        if (wildcards || depth > 0) {
+            Node<T> singleLevel = node.children.get(TopicFilters.SINGLE_LEVEL_WILDCARD);
+            if (singleLevel != null) {
+                match(singleLevel, levels, depth + 1, true, consumer);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package mqtt.bridge.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Access to virtual threads (Java 21) while the bridge is still compiled for
+ * Java 11. The API is looked up by reflection, on older runtimes
+ * {@link #isAvailable()} returns false and the callers fall back to platform
+ * thread pools.
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            // the builder returned is not public, its methods are called through the public interface
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // fails early if the runtime doesn't allow the calls, e.g. when virtual threads are a preview feature
+            factory.invoke(name.invoke(ofVirtual.invoke(null), "probe-", 0L));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Virtual threads are not supported by this runtime: {}", e.toString());
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return a factory for virtual threads named prefix0, prefix1, ..., or
+     *         for platform threads if virtual threads can't be created
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        if (isAvailable()) {
+            try {
+                Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+                return (ThreadFactory) FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.warn("Failed to create virtual threads, using platform threads: {}", e.toString());
+            }
+        }
+        return platformThreadFactory(prefix);
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for every task, or
+     *         a cached pool of platform threads if virtual threads can't be
+     *         created
+     */
+    public static ExecutorService newExecutor(String prefix) {
+        if (isAvailable()) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, newThreadFactory(prefix));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.warn("Failed to create virtual threads, using platform threads: {}", e.toString());
+            }
+        }
+        return Executors.newCachedThreadPool(platformThreadFactory(prefix));
+    }
+
+    private static ThreadFactory platformThreadFactory(String prefix) {
+        AtomicLong count = new AtomicLong();
+        return runnable -> new Thread(runnable, prefix + count.getAndIncrement());
+    }
+}
@@ -0,0 +1,47 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class BackoffJUnitTest {
+
+    @Test
+    void testFirstRetryIsImmediate() {
+        Backoff backoff = new Backoff(1000, 60000);
+        assertEquals(0, backoff.nextDelay());
+    }
+
+    @Test
+    void testDelayGrowsExponentiallyWithJitter() {
+        Backoff backoff = new Backoff(1000, 60000);
+        backoff.nextDelay();
+        long ceiling = 1000;
+        for (int i = 0; i < 5; i++) {
+            long delay = backoff.nextDelay();
+            assertTrue(delay >= ceiling / 2 && delay <= ceiling, "delay " + delay + " outside of jitter range");
+            ceiling *= 2;
+        }
+    }
+
+    @Test
+    void testDelayIsCappedAtMaxDelay() {
+        Backoff backoff = new Backoff(1000, 5000);
+        // many attempts must neither exceed the maximum nor overflow the shift
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.nextDelay();
+            assertTrue(delay >= 0 && delay <= 5000, "delay " + delay + " exceeds the maximum");
+        }
+        assertTrue(backoff.nextDelay() >= 2500);
+    }
+
+    @Test
+    void testReset() {
+        Backoff backoff = new Backoff(1000, 60000);
+        backoff.nextDelay();
+        backoff.nextDelay();
+        backoff.reset();
+        assertEquals(0, backoff.nextDelay());
+    }
+}
@@ -0,0 +1,129 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.jupiter.api.Test;
+
+public class FanoutSubscriberJUnitTest {
+
+    private static class RecordingSink implements FanoutSubscriber.Sink {
+        final List<String> events = new ArrayList<>();
+        int closed;
+        boolean failing;
+
+        @Override
+        public void send(String event) throws IOException {
+            if (failing) {
+                throw new IOException("broken pipe");
+            }
+            events.add(event);
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    // runs the drain only when asked to, like a busy executor
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            pending.forEach(Runnable::run);
+        }
+    }
+
+    @Test
+    void testSendsInOrder() {
+        RecordingSink sink = new RecordingSink();
+        FanoutSubscriber subscriber = new FanoutSubscriber(List.of("a/#"), sink, Runnable::run, 10,
+                FanoutSubscriber.DropPolicy.DROP_OLDEST);
+        subscriber.offer("1");
+        subscriber.offer("2");
+        assertEquals(List.of("1", "2"), sink.events);
+        assertEquals(0, subscriber.getDropped().get());
+    }
+
+    @Test
+    void testDropOldest() {
+        RecordingSink sink = new RecordingSink();
+        ManualExecutor executor = new ManualExecutor();
+        FanoutSubscriber subscriber = new FanoutSubscriber(List.of("a/#"), sink, executor, 2,
+                FanoutSubscriber.DropPolicy.DROP_OLDEST);
+        subscriber.offer("1");
+        subscriber.offer("2");
+        subscriber.offer("3");
+        // a single drain is scheduled for the whole buffer
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(List.of("2", "3"), sink.events);
+        assertEquals(1, subscriber.getDropped().get());
+    }
+
+    @Test
+    void testDropNewest() {
+        RecordingSink sink = new RecordingSink();
+        ManualExecutor executor = new ManualExecutor();
+        FanoutSubscriber subscriber = new FanoutSubscriber(List.of("a/#"), sink, executor, 2,
+                FanoutSubscriber.DropPolicy.DROP_NEWEST);
+        subscriber.offer("1");
+        subscriber.offer("2");
+        subscriber.offer("3");
+        executor.runAll();
+        assertEquals(List.of("1", "2"), sink.events);
+        assertEquals(1, subscriber.getDropped().get());
+    }
+
+    @Test
+    void testSameEventOnlyOnce() {
+        RecordingSink sink = new RecordingSink();
+        FanoutSubscriber subscriber = new FanoutSubscriber(List.of("a/#", "a/b"), sink, Runnable::run, 10,
+                FanoutSubscriber.DropPolicy.DROP_OLDEST);
+        String event = "matched by both filters";
+        subscriber.offer(event);
+        subscriber.offer(event);
+        assertEquals(List.of(event), sink.events);
+    }
+
+    @Test
+    void testClosedAfterFailedSend() {
+        RecordingSink sink = new RecordingSink();
+        sink.failing = true;
+        FanoutSubscriber subscriber = new FanoutSubscriber(List.of("a/#"), sink, Runnable::run, 10,
+                FanoutSubscriber.DropPolicy.DROP_OLDEST);
+        subscriber.offer("1");
+        assertTrue(subscriber.isClosed());
+        assertEquals(1, sink.closed);
+        sink.failing = false;
+        subscriber.offer("2");
+        assertTrue(sink.events.isEmpty());
+        subscriber.close();
+        assertEquals(1, sink.closed);
+    }
+
+    @Test
+    void testOpenUntilClosed() {
+        RecordingSink sink = new RecordingSink();
+        FanoutSubscriber subscriber = new FanoutSubscriber(List.of("a/#"), sink, Runnable::run, 10,
+                FanoutSubscriber.DropPolicy.DROP_OLDEST);
+        assertFalse(subscriber.isClosed());
+        subscriber.close();
+        assertTrue(subscriber.isClosed());
+        assertEquals(1, sink.closed);
+    }
+}
@@ -0,0 +1,106 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class IdempotencyCacheJUnitTest {
+
+    private static final long WINDOW = 60_000;
+
+    private static long sizeOf(String value) {
+        return 2L * value.length();
+    }
+
+    @Test
+    void testReplayWithinWindow() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(WINDOW, 1000, 1 << 20);
+        AtomicInteger calls = new AtomicInteger();
+        IdempotencyCache.Result<String> first = cache.execute("k", "payload/t",
+                () -> "id-" + calls.incrementAndGet(), IdempotencyCacheJUnitTest::sizeOf);
+        IdempotencyCache.Result<String> retry = cache.execute("k", "payload/t",
+                () -> "id-" + calls.incrementAndGet(), IdempotencyCacheJUnitTest::sizeOf);
+        assertFalse(first.isReplayed());
+        assertTrue(retry.isReplayed());
+        assertEquals("id-1", retry.getValue());
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.getReplayed());
+    }
+
+    @Test
+    void testRejectKeyOfDifferentRequest() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(WINDOW, 1000, 1 << 20);
+        cache.execute("k", "payload/t#a", () -> "a", IdempotencyCacheJUnitTest::sizeOf);
+        assertThrows(IllegalStateException.class,
+                () -> cache.execute("k", "payload/t#b", () -> "b", IdempotencyCacheJUnitTest::sizeOf));
+    }
+
+    @Test
+    void testRejectWhileInProgress() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(WINDOW, 1000, 1 << 20);
+        cache.execute("k", "f", () -> {
+            assertThrows(IllegalStateException.class,
+                    () -> cache.execute("k", "f", () -> "nested", IdempotencyCacheJUnitTest::sizeOf));
+            return "outer";
+        }, IdempotencyCacheJUnitTest::sizeOf);
+        assertEquals("outer", cache.execute("k", "f", () -> "again", IdempotencyCacheJUnitTest::sizeOf).getValue());
+    }
+
+    @Test
+    void testFailedRequestIsForgotten() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(WINDOW, 1000, 1 << 20);
+        assertThrows(IOException.class, () -> cache.execute("k", "f", () -> {
+            throw new IOException("broker down");
+        }, IdempotencyCacheJUnitTest::sizeOf));
+        assertEquals(0, cache.size());
+        IdempotencyCache.Result<String> retry = cache.execute("k", "f", () -> "ok", IdempotencyCacheJUnitTest::sizeOf);
+        assertFalse(retry.isReplayed());
+    }
+
+    @Test
+    void testExpiredKeysArePurged() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(-1, 1000, 1 << 20);
+        cache.execute("k", "f", () -> "a", IdempotencyCacheJUnitTest::sizeOf);
+        assertEquals(1, cache.purge());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+        // an expired key runs the request again
+        assertFalse(cache.execute("k", "f", () -> "b", IdempotencyCacheJUnitTest::sizeOf).isReplayed());
+    }
+
+    @Test
+    void testBoundedByKeys() throws Exception {
+        // one key per stripe
+        IdempotencyCache cache = new IdempotencyCache(WINDOW, 64, 1 << 20);
+        for (int i = 0; i < 1000; i++) {
+            cache.execute("k" + i, "f", () -> "v", IdempotencyCacheJUnitTest::sizeOf);
+        }
+        assertTrue(cache.size() <= 64);
+    }
+
+    @Test
+    void testBoundedByBytes() throws Exception {
+        // a share of 1 KB per stripe
+        IdempotencyCache cache = new IdempotencyCache(WINDOW, 100_000, 64 * 1024);
+        String value = "x".repeat(256);
+        for (int i = 0; i < 10_000; i++) {
+            cache.execute("k" + i, "f", () -> value, IdempotencyCacheJUnitTest::sizeOf);
+        }
+        assertTrue(cache.getBytes() <= 64 * 1024);
+        assertTrue(cache.size() < 10_000);
+    }
+
+    @Test
+    void testOutcomeLargerThanShareIsRemembered() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(WINDOW, 100_000, 64);
+        String value = "x".repeat(1000);
+        cache.execute("k", "f", () -> value, IdempotencyCacheJUnitTest::sizeOf);
+        assertTrue(cache.execute("k", "f", () -> "other", IdempotencyCacheJUnitTest::sizeOf).isReplayed());
+    }
+}
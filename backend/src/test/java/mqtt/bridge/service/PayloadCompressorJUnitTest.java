@@ -0,0 +1,85 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import mqtt.bridge.configuration.CompressionRule;
+import mqtt.bridge.model.Compression;
+import mqtt.bridge.model.ValidationError;
+
+public class PayloadCompressorJUnitTest {
+
+    private final PayloadCompressor compressor = new PayloadCompressor();
+
+    private static byte[] measurements(int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            json.append(i > 0 ? "," : "").append("{\"temperature\":").append(20 + i % 5).append('}');
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        try (InputStream in = input) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void testGzipRoundTrip() throws IOException {
+        byte[] payload = measurements(1000);
+        byte[] compressed = compressor.compress(payload, Compression.GZIP);
+        assertTrue(compressed.length < payload.length);
+        assertArrayEquals(payload, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    void testDeflateRoundTrip() throws IOException {
+        byte[] payload = measurements(1000);
+        byte[] compressed = compressor.compress(payload, Compression.DEFLATE);
+        assertTrue(compressed.length < payload.length);
+        assertArrayEquals(payload, readAll(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    void testPooledContextIsReset() throws IOException {
+        byte[] large = measurements(10000);
+        byte[] small = "{\"temperature\":21}".getBytes(StandardCharsets.UTF_8);
+        compressor.compress(large, Compression.GZIP);
+        byte[] compressed = compressor.compress(small, Compression.GZIP);
+        assertArrayEquals(small, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    void testEmptyPayload() throws IOException {
+        byte[] compressed = compressor.compress(new byte[0], Compression.GZIP);
+        assertArrayEquals(new byte[0], readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    void testValidateRules() {
+        assertTrue(PayloadCompressor.validate(List.of(new CompressionRule("sensors/#", Compression.GZIP, 256)))
+                .isEmpty());
+        assertEquals(EnumSet.of(ValidationError.TopicFilter_Required),
+                PayloadCompressor.validate(List.of(new CompressionRule(null, Compression.GZIP, 0))));
+        assertEquals(EnumSet.of(ValidationError.Compression_Required),
+                PayloadCompressor.validate(List.of(new CompressionRule("sensors/+", null, 0))));
+        assertEquals(EnumSet.of(ValidationError.Wildcard_Must_Occupy_Entire_Level),
+                PayloadCompressor.validate(List.of(new CompressionRule("sensors/a+", Compression.DEFLATE, 0))));
+        assertEquals(EnumSet.of(ValidationError.TopicFilter_Required),
+                PayloadCompressor.validate(Arrays.asList((CompressionRule) null)));
+    }
+}
@@ -0,0 +1,43 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import mqtt.bridge.configuration.PayloadFormatRule;
+import mqtt.bridge.model.PayloadFormat;
+import mqtt.bridge.model.ValidationError;
+
+public class PayloadFormatsJUnitTest {
+
+    @Test
+    void testValidateRules() {
+        assertTrue(PayloadFormats.validate(List.of(new PayloadFormatRule("telemetry/#", PayloadFormat.CBOR),
+                new PayloadFormatRule("+/status", PayloadFormat.MSGPACK))).isEmpty());
+    }
+
+    @Test
+    void testValidateRuleWithoutFilter() {
+        assertEquals(EnumSet.of(ValidationError.TopicFilter_Required),
+                PayloadFormats.validate(List.of(new PayloadFormatRule(null, PayloadFormat.CBOR))));
+        assertEquals(EnumSet.of(ValidationError.TopicFilter_Required),
+                PayloadFormats.validate(Arrays.asList((PayloadFormatRule) null)));
+    }
+
+    @Test
+    void testValidateRuleWithoutFormat() {
+        assertEquals(EnumSet.of(ValidationError.PayloadFormat_Required),
+                PayloadFormats.validate(List.of(new PayloadFormatRule("telemetry/#", null))));
+    }
+
+    @Test
+    void testValidateRuleWithInvalidFilter() {
+        assertEquals(EnumSet.of(ValidationError.Multi_Level_Wildcard_Only_At_End),
+                PayloadFormats.validate(List.of(new PayloadFormatRule("#/telemetry", PayloadFormat.SMILE))));
+    }
+}
@@ -0,0 +1,100 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import mqtt.bridge.configuration.TransformationRule;
+
+public class PayloadTransformationJUnitTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String apply(TransformationRule rule, String json) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonParser parser = objectMapper.getFactory().createParser(json);
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            PayloadTransformation.compile(rule).apply(parser, generator);
+        }
+        return out.toString();
+    }
+
+    private static TransformationRule rule(Map<String, String> rename, List<String> drop, Map<String, Double> scale,
+            String timestampField) {
+        return new TransformationRule("#", rename, drop, scale, timestampField);
+    }
+
+    @Test
+    void testRenameDropAndScaleNestedFields() throws IOException {
+        TransformationRule rule = rule(Map.of("data.temp", "temperature"), List.of("secret"),
+                Map.of("data.temp", 0.5), null);
+        assertEquals("{\"data\":{\"temperature\":10.5,\"unit\":\"C\"},\"id\":1}",
+                apply(rule, "{\"data\":{\"temp\":21,\"unit\":\"C\"},\"secret\":\"x\",\"id\":1}"));
+    }
+
+    @Test
+    void testScaleKeepsIntegralValues() throws IOException {
+        TransformationRule rule = rule(null, null, Map.of("count", 1000.0, "ratio", 1000.0, "big", 10.0), null);
+        assertEquals("{\"count\":3000,\"ratio\":1500.0,\"big\":92233720368547758070}",
+                apply(rule, "{\"count\":3,\"ratio\":1.5,\"big\":9223372036854775807}"));
+        TransformationRule fraction = rule(null, null, Map.of("count", 0.1), null);
+        assertEquals("{\"count\":0.5}", apply(fraction, "{\"count\":5}"));
+    }
+
+    @Test
+    void testTimestampFieldReplacesExistingField() throws IOException {
+        JsonNode result = objectMapper.readTree(apply(rule(null, null, null, "receivedAt"),
+                "{\"receivedAt\":\"old\",\"value\":1}"));
+        assertEquals(2, result.size());
+        assertTrue(result.get("receivedAt").asText().endsWith("Z"));
+    }
+
+    @Test
+    void testRenameReplacesFieldOfPayload() throws IOException {
+        assertEquals("{\"temperature\":21}",
+                apply(rule(Map.of("temp", "temperature"), null, null, null), "{\"temperature\":1,\"temp\":21}"));
+        // fields can swap their names
+        assertEquals("{\"b\":1,\"a\":2}", apply(rule(Map.of("a", "b", "b", "a"), null, null, null), "{\"a\":1,\"b\":2}"));
+    }
+
+    @Test
+    void testRejectConflictingNames() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PayloadTransformation.compile(rule(Map.of("a", "c", "b", "c"), null, null, null)));
+        // b keeps its name because it is only scaled
+        assertThrows(IllegalArgumentException.class,
+                () -> PayloadTransformation.compile(rule(Map.of("a", "b"), null, Map.of("b", 2.0), null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> PayloadTransformation.compile(rule(Map.of("time", "receivedAt"), null, null, "receivedAt")));
+        // a dropped field does not conflict
+        PayloadTransformation.compile(rule(Map.of("a", "b"), List.of("b"), null, null));
+    }
+
+    @Test
+    void testRejectMissingOrInvalidTopicFilter() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PayloadTransformation.compile(new TransformationRule(null, null, List.of("a"), null, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> PayloadTransformation.compile(new TransformationRule("", null, List.of("a"), null, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> PayloadTransformation.compile(new TransformationRule("a/b#", null, List.of("a"), null, null)));
+        assertThrows(IllegalArgumentException.class, () -> PayloadTransformation.compile(null));
+    }
+
+    @Test
+    void testNonObjectPayloadIsCopied() throws IOException {
+        assertEquals("[1,2]", apply(rule(null, List.of("a"), null, "time"), "[1,2]"));
+    }
+}
@@ -0,0 +1,142 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PublishJournalJUnitTest {
+
+    // a record of topic t/<n> with a 10 byte payload takes 22 bytes, three fit into a segment
+    private static final int SEGMENT_SIZE = 66;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] payload(int n) {
+        return String.format("payload-%02d", n).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void append(PublishJournal journal, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            assertTrue(journal.append("t/" + i, payload(i), 1, i % 2 == 0));
+        }
+    }
+
+    @Test
+    void testReplayInOrder() throws IOException {
+        PublishJournal journal = new PublishJournal(directory, SEGMENT_SIZE, 1024,
+                PublishJournal.EvictionPolicy.DROP_OLDEST);
+        append(journal, 0, 7);
+        assertEquals(7, journal.getPending());
+        for (int i = 0; i < 7; i++) {
+            PublishJournal.Entry entry = journal.peek();
+            assertEquals("t/" + i, entry.getTopic());
+            assertArrayEquals(payload(i), entry.getPayload());
+            assertEquals(1, entry.getQos());
+            assertEquals(i % 2 == 0, entry.isRetained());
+            assertTrue(journal.acknowledge(entry));
+        }
+        assertNull(journal.peek());
+        assertEquals(0, journal.getPending());
+    }
+
+    @Test
+    void testAcknowledgeOnlyOnce() throws IOException {
+        PublishJournal journal = new PublishJournal(directory, SEGMENT_SIZE, 1024,
+                PublishJournal.EvictionPolicy.DROP_OLDEST);
+        append(journal, 0, 2);
+        PublishJournal.Entry entry = journal.peek();
+        assertTrue(journal.acknowledge(entry));
+        assertFalse(journal.acknowledge(entry));
+        assertEquals("t/1", journal.peek().getTopic());
+        assertEquals(1, journal.getPending());
+    }
+
+    @Test
+    void testPendingRecordsSurviveRestart() throws IOException {
+        PublishJournal journal = new PublishJournal(directory, SEGMENT_SIZE, 1024,
+                PublishJournal.EvictionPolicy.DROP_OLDEST);
+        append(journal, 0, 5);
+        journal.acknowledge(journal.peek());
+        journal.acknowledge(journal.peek());
+        journal.close();
+
+        PublishJournal recovered = new PublishJournal(directory, SEGMENT_SIZE, 1024,
+                PublishJournal.EvictionPolicy.DROP_OLDEST);
+        assertEquals(3, recovered.getPending());
+        assertEquals("t/2", recovered.peek().getTopic());
+        // appending continues after the recovered records
+        append(recovered, 5, 6);
+        int replayed = 0;
+        PublishJournal.Entry entry;
+        while ((entry = recovered.peek()) != null) {
+            assertEquals("t/" + (2 + replayed), entry.getTopic());
+            recovered.acknowledge(entry);
+            replayed++;
+        }
+        assertEquals(4, replayed);
+    }
+
+    @Test
+    void testDropOldestEvictsHeadSegment() throws IOException {
+        PublishJournal journal = new PublishJournal(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE,
+                PublishJournal.EvictionPolicy.DROP_OLDEST);
+        append(journal, 0, 6);
+        // the third segment replaces the first one
+        append(journal, 6, 7);
+        assertEquals(3, journal.getEvicted());
+        assertEquals(4, journal.getPending());
+        assertEquals("t/3", journal.peek().getTopic());
+    }
+
+    @Test
+    void testAcknowledgeOfEvictedRecordIsIgnored() throws IOException {
+        PublishJournal journal = new PublishJournal(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE,
+                PublishJournal.EvictionPolicy.DROP_OLDEST);
+        append(journal, 0, 6);
+        PublishJournal.Entry entry = journal.peek();
+        assertEquals("t/0", entry.getTopic());
+        // evicts the segment of the entry while it is being replayed
+        append(journal, 6, 7);
+        assertFalse(journal.acknowledge(entry));
+        assertEquals(4, journal.getPending());
+        assertEquals("t/3", journal.peek().getTopic());
+    }
+
+    @Test
+    void testRejectNewWhenFull() throws IOException {
+        PublishJournal journal = new PublishJournal(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE,
+                PublishJournal.EvictionPolicy.REJECT_NEW);
+        append(journal, 0, 6);
+        assertFalse(journal.append("t/6", payload(6), 1, false));
+        assertEquals(6, journal.getPending());
+        assertEquals(0, journal.getEvicted());
+    }
+
+    @Test
+    void testDiscard() throws IOException {
+        PublishJournal journal = new PublishJournal(directory, SEGMENT_SIZE, 1024,
+                PublishJournal.EvictionPolicy.DROP_OLDEST);
+        append(journal, 0, 2);
+        assertTrue(journal.discard(journal.peek()));
+        assertEquals(1, journal.getDiscarded());
+        assertEquals("t/1", journal.peek().getTopic());
+    }
+
+    @Test
+    void testRecordLargerThanSegment() throws IOException {
+        PublishJournal journal = new PublishJournal(directory, SEGMENT_SIZE, 1024,
+                PublishJournal.EvictionPolicy.DROP_OLDEST);
+        assertThrows(IllegalArgumentException.class, () -> journal.append("t", new byte[SEGMENT_SIZE], 0, false));
+    }
+}
@@ -0,0 +1,91 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class PublishWindowJUnitTest {
+
+    @Test
+    void testPermitsUpToLimit() {
+        PublishWindow window = new PublishWindow(() -> 2, 10);
+        AtomicInteger permits = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(window.acquire(permits::incrementAndGet));
+        }
+        assertEquals(2, permits.get());
+        assertEquals(2, window.getInUse());
+        assertEquals(1, window.getWaiting());
+    }
+
+    @Test
+    void testRejectWhenQueueFull() {
+        PublishWindow window = new PublishWindow(() -> 1, 1);
+        assertTrue(window.acquire(() -> {
+        }));
+        assertTrue(window.acquire(() -> {
+        }));
+        assertFalse(window.acquire(() -> {
+        }));
+        assertEquals(1, window.getWaiting());
+    }
+
+    @Test
+    void testHandOverInOrder() {
+        PublishWindow window = new PublishWindow(() -> 1, 10);
+        List<Integer> order = new ArrayList<>();
+        window.acquire(() -> order.add(0));
+        for (int i = 1; i < 4; i++) {
+            int n = i;
+            window.acquire(() -> order.add(n));
+        }
+        for (int i = 0; i < 3; i++) {
+            window.release();
+        }
+        assertEquals(List.of(0, 1, 2, 3), order);
+        assertEquals(1, window.getInUse());
+        assertEquals(0, window.getWaiting());
+    }
+
+    @Test
+    void testImmediateReleaseDoesNotRecurse() {
+        int waiters = 100_000;
+        PublishWindow window = new PublishWindow(() -> 1, waiters);
+        AtomicInteger permits = new AtomicInteger();
+        window.acquire(permits::incrementAndGet);
+        for (int i = 0; i < waiters; i++) {
+            // like a request that timed out while waiting, the permit is returned right away
+            window.acquire(() -> {
+                permits.incrementAndGet();
+                window.release();
+            });
+        }
+        window.release();
+        assertEquals(waiters + 1, permits.get());
+        assertEquals(0, window.getInUse());
+        assertEquals(0, window.getWaiting());
+    }
+
+    @Test
+    void testCancelWaiting() {
+        PublishWindow window = new PublishWindow(() -> 1, 1);
+        AtomicInteger permits = new AtomicInteger();
+        Runnable first = permits::incrementAndGet;
+        Runnable cancelled = () -> permits.addAndGet(100);
+        window.acquire(first);
+        window.acquire(cancelled);
+        assertTrue(window.cancel(cancelled));
+        assertFalse(window.cancel(cancelled));
+        // the cancelled caller no longer takes a place in the queue
+        assertTrue(window.acquire(permits::incrementAndGet));
+        window.release();
+        assertEquals(2, permits.get());
+        assertFalse(window.cancel(first));
+    }
+}
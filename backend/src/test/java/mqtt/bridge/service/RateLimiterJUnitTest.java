@@ -0,0 +1,64 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import mqtt.bridge.configuration.RateLimitRule;
+
+public class RateLimiterJUnitTest {
+
+    // one token per minute, the test never waits for a refill
+    private static final double RATE = 1.0 / 60;
+
+    @Test
+    void testRuleAppliesToMatchingTopics() {
+        RateLimiter limiter = new RateLimiter(List.of(new RateLimitRule("measurements/#", false, RATE, 1)));
+        assertEquals(0, limiter.acquire("measurements/a", "alice"));
+        assertTrue(limiter.acquire("measurements/b", "bob") > 0);
+        assertEquals(0, limiter.acquire("events/a", "alice"));
+    }
+
+    @Test
+    void testPerClientBuckets() {
+        RateLimiter limiter = new RateLimiter(List.of(new RateLimitRule(null, true, RATE, 1)));
+        assertEquals(0, limiter.acquire("a", "alice"));
+        assertTrue(limiter.acquire("a", "alice") > 0);
+        assertEquals(0, limiter.acquire("a", "bob"));
+        // requests without a user share one bucket
+        assertEquals(0, limiter.acquire("a", null));
+        assertTrue(limiter.acquire("a", null) > 0);
+    }
+
+    @Test
+    void testRejectedMessageReturnsTokens() {
+        RateLimiter limiter = new RateLimiter(List.of(new RateLimitRule(null, false, RATE, 2),
+                new RateLimitRule("limited/#", false, RATE, 1)));
+        assertEquals(0, limiter.acquire("limited/a", "alice"));
+        // rejected by the second rule, the token of the first rule is returned
+        assertTrue(limiter.acquire("limited/a", "alice") > 0);
+        assertEquals(0, limiter.acquire("other", "alice"));
+        assertTrue(limiter.acquire("other", "alice") > 0);
+    }
+
+    @Test
+    void testRulesWithoutRateAreIgnored() {
+        RateLimiter limiter = new RateLimiter(List.of(new RateLimitRule(null, false, 0, 1)));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.acquire("a", "alice"));
+        }
+    }
+
+    @Test
+    void testPurgeDropsFullClientBuckets() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(List.of(new RateLimitRule(null, true, 100, 1)));
+        limiter.acquire("a", "alice");
+        limiter.acquire("a", "bob");
+        assertEquals(0, limiter.purge());
+        Thread.sleep(20);
+        assertEquals(2, limiter.purge());
+    }
+}
@@ -0,0 +1,83 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+public class ReplyTrackerJUnitTest {
+
+    @Test
+    void testRandomIds() {
+        ReplyTracker tracker = new ReplyTracker(0);
+        String first = tracker.register(1000).getId();
+        String second = tracker.register(1000).getId();
+        assertTrue(first.matches("[0-9a-f]{32}"));
+        assertNotEquals(first, second);
+        assertEquals(2, tracker.getPending());
+    }
+
+    @Test
+    void testComplete() throws Exception {
+        ReplyTracker tracker = new ReplyTracker(0);
+        ReplyTracker.Pending request = tracker.register(1000);
+        assertFalse(tracker.complete("unknown", new byte[] { 1 }));
+        assertTrue(tracker.complete(request.getId(), new byte[] { 2 }));
+        assertArrayEquals(new byte[] { 2 }, request.getReply().get());
+        // a second reply is discarded
+        assertFalse(tracker.complete(request.getId(), new byte[] { 3 }));
+        assertEquals(0, tracker.getPending());
+    }
+
+    @Test
+    void testExpiry() {
+        ReplyTracker tracker = new ReplyTracker(0);
+        ReplyTracker.Pending request = tracker.register(500);
+        assertEquals(0, tracker.advance(500));
+        assertFalse(request.getReply().isDone());
+        assertEquals(1, tracker.advance(600));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> request.getReply().get());
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertFalse(tracker.complete(request.getId(), new byte[0]));
+    }
+
+    @Test
+    void testAdvanceByElapsedTime() {
+        ReplyTracker tracker = new ReplyTracker(0);
+        ReplyTracker.Pending request = tracker.register(300);
+        // a late run catches up on the missed ticks
+        assertEquals(0, tracker.advance(50));
+        assertEquals(1, tracker.advance(10_000));
+        assertTrue(request.getReply().isCompletedExceptionally());
+    }
+
+    @Test
+    void testAdvanceBeyondOneRound() {
+        ReplyTracker tracker = new ReplyTracker(0);
+        ReplyTracker.Pending shortRequest = tracker.register(200);
+        ReplyTracker.Pending longRequest = tracker.register(ReplyTracker.TICK_MS * 3000);
+        assertEquals(1, tracker.advance(ReplyTracker.TICK_MS * 2000));
+        assertTrue(shortRequest.getReply().isCompletedExceptionally());
+        assertFalse(longRequest.getReply().isDone());
+        assertEquals(1, tracker.advance(ReplyTracker.TICK_MS * 3100));
+        assertTrue(longRequest.getReply().isCompletedExceptionally());
+    }
+
+    @Test
+    void testFail() {
+        ReplyTracker tracker = new ReplyTracker(0);
+        ReplyTracker.Pending request = tracker.register(1000);
+        tracker.fail(request.getId(), new IllegalStateException("not connected"));
+        assertTrue(request.getReply().isCompletedExceptionally());
+        assertEquals(0, tracker.getPending());
+        assertEquals(0, tracker.advance(10_000));
+    }
+}
@@ -0,0 +1,49 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketJUnitTest {
+
+    @Test
+    void testBurstThenReject() {
+        // one token per minute, the test never waits for a refill
+        TokenBucket bucket = new TokenBucket(1.0 / 60, 3);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.tryAcquire());
+        }
+        long wait = bucket.tryAcquire();
+        assertTrue(wait > TimeUnit.SECONDS.toNanos(50));
+        assertTrue(wait <= TimeUnit.SECONDS.toNanos(60));
+    }
+
+    @Test
+    void testBurstOfAtLeastOne() {
+        TokenBucket bucket = new TokenBucket(1.0 / 60, 0);
+        assertEquals(0, bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire() > 0);
+    }
+
+    @Test
+    void testReleaseReturnsToken() {
+        TokenBucket bucket = new TokenBucket(1.0 / 60, 1);
+        assertEquals(0, bucket.tryAcquire());
+        bucket.release();
+        assertEquals(0, bucket.tryAcquire());
+    }
+
+    @Test
+    void testRefill() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 1);
+        assertEquals(0, bucket.tryAcquire());
+        assertFalse(bucket.isFull());
+        Thread.sleep(20);
+        assertTrue(bucket.isFull());
+        assertEquals(0, bucket.tryAcquire());
+    }
+}
@@ -0,0 +1,84 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import mqtt.bridge.model.ValidationError;
+
+public class TopicFiltersJUnitTest {
+
+    @Test
+    void testMatchesExactTopic() {
+        assertTrue(TopicFilters.matches("a/b/c", "a/b/c"));
+        assertFalse(TopicFilters.matches("a/b/c", "a/b"));
+        assertFalse(TopicFilters.matches("a/b", "a/b/c"));
+        assertFalse(TopicFilters.matches("a/b/c", "a/b/cd"));
+    }
+
+    @Test
+    void testMatchesSingleLevelWildcard() {
+        assertTrue(TopicFilters.matches("a/+/c", "a/b/c"));
+        assertTrue(TopicFilters.matches("a/+", "a/"));
+        assertTrue(TopicFilters.matches("+/+", "/b"));
+        assertFalse(TopicFilters.matches("a/+", "a/b/c"));
+        assertFalse(TopicFilters.matches("a/+", "a"));
+    }
+
+    @Test
+    void testMatchesMultiLevelWildcard() {
+        assertTrue(TopicFilters.matches("#", "a/b/c"));
+        assertTrue(TopicFilters.matches("a/#", "a/b/c"));
+        // # also matches the parent level
+        assertTrue(TopicFilters.matches("a/#", "a"));
+        assertTrue(TopicFilters.matches("a/+/#", "a/b"));
+        assertFalse(TopicFilters.matches("a/#", "b/c"));
+    }
+
+    @Test
+    void testMatchesEmptyLevels() {
+        assertTrue(TopicFilters.matches("a//b", "a//b"));
+        assertFalse(TopicFilters.matches("a/b", "a//b"));
+        assertTrue(TopicFilters.matches("a/", "a/"));
+        assertFalse(TopicFilters.matches("a", "a/"));
+    }
+
+    @Test
+    void testValidateValidFilters() {
+        assertTrue(TopicFilters.validate("a/b/c").isEmpty());
+        assertTrue(TopicFilters.validate("a/+/c").isEmpty());
+        assertTrue(TopicFilters.validate("a/+/#").isEmpty());
+        assertTrue(TopicFilters.validate("#").isEmpty());
+    }
+
+    @Test
+    void testValidateWildcardCounts() {
+        assertEquals(EnumSet.of(ValidationError.Multi_Level_Wildcard_Only_At_End),
+                TopicFilters.validate("a/#/c"));
+        assertEquals(EnumSet.of(ValidationError.Only_One_Single_Level_Wildcard), TopicFilters.validate("+/+"));
+        assertEquals(EnumSet.of(ValidationError.Only_One_Multi_Level_Wildcard,
+                ValidationError.Multi_Level_Wildcard_Only_At_End), TopicFilters.validate("#/#"));
+    }
+
+    @Test
+    void testValidateWildcardInsideLevel() {
+        assertEquals(EnumSet.of(ValidationError.Wildcard_Must_Occupy_Entire_Level), TopicFilters.validate("a+b"));
+        assertEquals(EnumSet.of(ValidationError.Wildcard_Must_Occupy_Entire_Level),
+                TopicFilters.validate("a/foo#"));
+        assertEquals(EnumSet.of(ValidationError.Wildcard_Must_Occupy_Entire_Level),
+                TopicFilters.validate("a/+b/c"));
+    }
+
+    @Test
+    void testValidateRule() {
+        assertTrue(TopicFilters.validateRule("a/+/c").isEmpty());
+        assertEquals(EnumSet.of(ValidationError.TopicFilter_Required), TopicFilters.validateRule(null));
+        assertEquals(EnumSet.of(ValidationError.TopicFilter_Required), TopicFilters.validateRule(""));
+        assertEquals(EnumSet.of(ValidationError.Multi_Level_Wildcard_Only_At_End),
+                TopicFilters.validateRule("#/a"));
+    }
+}
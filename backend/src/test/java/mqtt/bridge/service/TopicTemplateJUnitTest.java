@@ -0,0 +1,98 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import mqtt.bridge.configuration.TopicTemplateConfiguration;
+import mqtt.bridge.model.ResolveException;
+import mqtt.bridge.model.ValidationError;
+
+public class TopicTemplateJUnitTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JsonNode json(String json) throws Exception {
+        return objectMapper.readTree(json);
+    }
+
+    @Test
+    void testResolve() throws Exception {
+        TopicTemplate template = TopicTemplate.compile("devices/{$.device.id}/measurements/{$.types[1]}");
+        assertEquals("devices/d1/measurements/humidity",
+                template.resolve(json("{\"device\":{\"id\":\"d1\"},\"types\":[\"temperature\",\"humidity\"]}")));
+        assertEquals("devices/42/measurements/b", template.resolve(json("{\"device\":{\"id\":42},\"types\":[\"a\",\"b\"]}")));
+    }
+
+    @Test
+    void testResolveRejectsMissingAndInvalidValues() throws Exception {
+        TopicTemplate template = TopicTemplate.compile("devices/{$.id}");
+        assertThrows(ResolveException.class, () -> template.resolve(json("{}")));
+        assertThrows(ResolveException.class, () -> template.resolve(json("{\"id\":null}")));
+        assertThrows(ResolveException.class, () -> template.resolve(json("{\"id\":{\"a\":1}}")));
+        assertThrows(ResolveException.class, () -> template.resolve(json("{\"id\":\"\"}")));
+        assertThrows(ResolveException.class, () -> template.resolve(json("{\"id\":\"a/b\"}")));
+        assertThrows(ResolveException.class, () -> template.resolve(json("{\"id\":\"+\"}")));
+        assertThrows(ResolveException.class, () -> template.resolve(json("{\"id\":\"#\"}")));
+    }
+
+    @Test
+    void testResolveChecksTopicFilter() throws Exception {
+        TopicTemplate template = TopicTemplate.compile("devices/{$.id}/{$.type}", "devices/+/measurements");
+        assertEquals("devices/d1/measurements", template.resolve(json("{\"id\":\"d1\",\"type\":\"measurements\"}")));
+        assertThrows(ResolveException.class, () -> template.resolve(json("{\"id\":\"d1\",\"type\":\"events\"}")));
+    }
+
+    @Test
+    void testCompileRejectsInvalidSubstitutions() {
+        assertThrows(IllegalArgumentException.class, () -> TopicTemplate.compile("devices/{$.id"));
+        assertThrows(IllegalArgumentException.class, () -> TopicTemplate.compile("devices/{id}"));
+        assertThrows(IllegalArgumentException.class, () -> TopicTemplate.compile("devices/{$.}"));
+        assertThrows(IllegalArgumentException.class, () -> TopicTemplate.compile("devices/{$.a[x]}"));
+    }
+
+    @Test
+    void testValidateTemplateAgainstFilter() {
+        assertTrue(TopicTemplate.validate("devices/{$.id}/measurements", "devices/+/measurements").isEmpty());
+        assertTrue(TopicTemplate.validate("devices/{$.id}/measurements", "devices/#").isEmpty());
+        assertEquals(EnumSet.of(ValidationError.TemplateTopic_Must_Match_The_SubscriptionTopic),
+                TopicTemplate.validate("devices/{$.id}/events", "devices/+/measurements"));
+        assertEquals(EnumSet.of(ValidationError.TemplateTopic_Must_Not_Contain_Wildcards),
+                TopicTemplate.validate("devices/+/{$.id}", null));
+        assertEquals(EnumSet.of(ValidationError.TemplateTopic_Invalid_Substitution),
+                TopicTemplate.validate("devices/{id}", null));
+    }
+
+    @Test
+    void testValidateConfigurations() {
+        List<TopicTemplateConfiguration> templates = Arrays.asList(
+                new TopicTemplateConfiguration("a", "devices/{$.id}", null),
+                new TopicTemplateConfiguration("a", "events/{$.id}", null));
+        assertEquals(EnumSet.of(ValidationError.TemplateTopic_Not_Unique), TopicTemplate.validate(templates));
+
+        templates = Arrays.asList(new TopicTemplateConfiguration("a", "devices/{$.id}", null),
+                new TopicTemplateConfiguration("b", "devices/{$.id}/events", null));
+        assertEquals(EnumSet.of(ValidationError.TemplateTopic_Must_Not_Be_Substring_Of_Other_TemplateTopic),
+                TopicTemplate.validate(templates));
+    }
+
+    @Test
+    void testValidateConfigurationsWithoutNameOrTemplate() {
+        List<TopicTemplateConfiguration> templates = Arrays.asList(
+                new TopicTemplateConfiguration(null, "devices/{$.id}", null),
+                new TopicTemplateConfiguration("b", null, null),
+                null,
+                new TopicTemplateConfiguration("c", "events/{$.id}", null));
+        assertEquals(EnumSet.of(ValidationError.TemplateTopic_Name_And_Template_Required),
+                TopicTemplate.validate(templates));
+    }
+}
@@ -0,0 +1,74 @@
+package mqtt.bridge.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TopicTrieJUnitTest {
+
+    private static List<String> match(TopicTrie<String> trie, String topic) {
+        List<String> values = new ArrayList<>();
+        trie.match(topic, values::add);
+        values.sort(null);
+        return values;
+    }
+
+    @Test
+    void testExactMatch() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("a/b", "1");
+        trie.add("a/c", "2");
+        assertEquals(List.of("1"), match(trie, "a/b"));
+        assertTrue(match(trie, "a").isEmpty());
+        assertTrue(match(trie, "a/b/c").isEmpty());
+    }
+
+    @Test
+    void testWildcards() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("a/+", "single");
+        trie.add("a/#", "multi");
+        trie.add("+/b/#", "both");
+        trie.add("#", "all");
+        assertEquals(List.of("all", "both", "multi", "single"), match(trie, "a/b"));
+        // # also matches the parent level
+        assertEquals(List.of("all", "multi"), match(trie, "a"));
+        assertEquals(List.of("all", "both", "multi"), match(trie, "a/b/c"));
+        assertEquals(List.of("all", "both"), match(trie, "x/b"));
+    }
+
+    @Test
+    void testSystemTopics() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("#", "all");
+        trie.add("+/broker/uptime", "single");
+        trie.add("$SYS/#", "sys");
+        // wildcards at the first level don't match topics starting with $
+        assertEquals(List.of("sys"), match(trie, "$SYS/broker/uptime"));
+    }
+
+    @Test
+    void testRemove() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("a/+", "1");
+        trie.add("a/+", "2");
+        trie.remove("a/+", "1");
+        assertEquals(List.of("2"), match(trie, "a/b"));
+        trie.remove("a/+", "2");
+        assertTrue(match(trie, "a/b").isEmpty());
+        // removing an unknown filter is a no-op
+        trie.remove("x/y", "1");
+    }
+
+    @Test
+    void testValueWithSeveralFilters() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("a/#", "1");
+        trie.add("a/b", "1");
+        assertEquals(List.of("1", "1"), match(trie, "a/b"));
+    }
+}
@@ -23,14 +23,63 @@ export interface ConnectionConfiguration {
   useSelfSignedCertificate: boolean;
   fingerprintSelfSignedCertificate: string;
   nameCertificate: string;
+  maxInflight?: number;
+  poolSize?: number;
+  mqttVersion?: number;
+  messageExpiryInterval?: number;
+  receiveMaximum?: number;
+  topicAliasMaximum?: number;
+  qosLanes?: boolean;
 }
 
 export interface ServiceConfiguration {
   logPayload: boolean;
+  passthroughPayload?: boolean;
+  validatePayload?: boolean;
+  asyncPublish?: boolean;
+  compressionRules?: CompressionRule[];
+  payloadFormatRules?: PayloadFormatRule[];
+  topicTemplates?: TopicTemplate[];
+  transformationRules?: TransformationRule[];
+  rateLimits?: RateLimitRule[];
+}
+
+export interface RateLimitRule {
+  topicFilter?: string;
+  perClient?: boolean;
+  rate: number;
+  burst?: number;
+}
+
+export interface TransformationRule {
+  topicFilter: string;
+  rename?: { [path: string]: string };
+  drop?: string[];
+  scale?: { [path: string]: number };
+  timestampField?: string;
+}
+
+export interface TopicTemplate {
+  name: string;
+  template: string;
+  topicFilter?: string;
+}
+
+export interface PayloadFormatRule {
+  topicFilter: string;
+  format: 'JSON' | 'CBOR' | 'SMILE' | 'MSGPACK';
+}
+
+export interface CompressionRule {
+  topicFilter: string;
+  compression: 'GZIP' | 'DEFLATE';
+  minSize?: number;
 }
 
 export interface ServiceStatus {
   status: Status;
+  connectedClients?: number;
+  poolSize?: number;
 }
 
 export enum Operation {